@@ -0,0 +1,95 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.benchmark;
+
+import com.github.paddan.test.access.Accessor;
+import com.github.paddan.test.access.CompiledAccessor;
+import com.github.paddan.test.access.Snapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every way of reading a field through {@link Accessor}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessorBenchmark {
+
+    private BenchmarkTarget target;
+    private CompiledAccessor<String> compiled;
+
+    @Setup
+    public void setup() throws IllegalAccessException {
+        target = new BenchmarkTarget();
+        compiled = Accessor.compile("name", BenchmarkTarget.class, String.class);
+    }
+
+    @Benchmark
+    public Object getByName() throws IllegalAccessException {
+        return Accessor.get("name", target);
+    }
+
+    @Benchmark
+    public Object getSuperclassFieldByName() throws IllegalAccessException {
+        return Accessor.get("superCounter", target);
+    }
+
+    @Benchmark
+    public Object getByAnnotation() throws IllegalAccessException {
+        return Accessor.get(BenchmarkTarget.Collaborator.class, BenchmarkTarget.Service.class, target);
+    }
+
+    @Benchmark
+    public Object getWithBuilder() throws IllegalAccessException {
+        return Accessor.get("name").from(target);
+    }
+
+    @Benchmark
+    public String getCompiled() {
+        return compiled.get(target);
+    }
+
+    @Benchmark
+    public int getInt() throws IllegalAccessException {
+        return Accessor.getInt("counter", target);
+    }
+
+    @Benchmark
+    public Snapshot snapshot() throws IllegalAccessException {
+        return Accessor.snapshot(target);
+    }
+}
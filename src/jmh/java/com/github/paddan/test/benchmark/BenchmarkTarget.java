@@ -0,0 +1,73 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.benchmark;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The object the Accessor, Caller and Injector benchmarks work on.
+ */
+@SuppressWarnings("unused")
+class BenchmarkTarget extends SuperBenchmarkTarget {
+
+    @Collaborator
+    private Service service;
+    private Repository repository;
+    private String name = "target";
+    private int counter;
+    private static String staticName = "static";
+
+    BenchmarkTarget() {
+    }
+
+    private BenchmarkTarget(String name, Integer counter) {
+        this.name = name;
+        this.counter = counter;
+    }
+
+    private String getName() {
+        return name;
+    }
+
+    private int add(int first, int second) {
+        return first + second;
+    }
+
+    private static String echo(String value) {
+        return value;
+    }
+
+    interface Service {
+    }
+
+    interface Repository {
+    }
+
+    @Target(ElementType.FIELD)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Collaborator {
+    }
+}
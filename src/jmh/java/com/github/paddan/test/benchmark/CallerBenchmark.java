@@ -0,0 +1,93 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.benchmark;
+
+import com.github.paddan.test.construction.Caller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Caller}, both with reflection and with generated invokers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallerBenchmark {
+
+    @Param({"false", "true"})
+    private boolean generatedInvokers;
+
+    private BenchmarkTarget target;
+
+    @Setup
+    public void setup() {
+        Caller.useGeneratedInvokers(generatedInvokers);
+        target = new BenchmarkTarget();
+    }
+
+    @TearDown
+    public void tearDown() {
+        Caller.useGeneratedInvokers(false);
+    }
+
+    @Benchmark
+    public Object constructWithoutArguments() throws ReflectiveOperationException {
+        return Caller.construct(BenchmarkTarget.class);
+    }
+
+    @Benchmark
+    public Object constructWithArguments() throws ReflectiveOperationException {
+        return Caller.construct(BenchmarkTarget.class, "name", 10);
+    }
+
+    @Benchmark
+    public Object callMethodWithoutArguments() throws IllegalAccessException, InvocationTargetException {
+        return Caller.callMethod(target, "getName");
+    }
+
+    @Benchmark
+    public Object callMethodWithArguments() throws IllegalAccessException, InvocationTargetException {
+        return Caller.callMethod(target, "add", 1, 2);
+    }
+
+    @Benchmark
+    public Object callStatic() throws IllegalAccessException, InvocationTargetException {
+        return Caller.callStatic(BenchmarkTarget.class, "echo", "value");
+    }
+}
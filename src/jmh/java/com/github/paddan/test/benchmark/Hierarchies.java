@@ -0,0 +1,254 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.benchmark;
+
+/**
+ * Class hierarchies of different depths and widths used by the benchmarks. Every level of a narrow hierarchy declares
+ * 4 fields and every level of a wide hierarchy declares 16 fields.
+ */
+@SuppressWarnings("unused")
+final class Hierarchies {
+
+    private Hierarchies() {
+    }
+
+    /**
+     * Looks up a class of the given hierarchy.
+     *
+     * @param fieldsPerLevel 4 for the narrow hierarchy, 16 for the wide one
+     * @param depth          the depth of the class in the hierarchy, from 1 to 8
+     * @return the class
+     */
+    static Class<?> type(int fieldsPerLevel, int depth) throws ClassNotFoundException {
+        String family = fieldsPerLevel == 4 ? "Narrow" : "Wide";
+        return Class.forName(Hierarchies.class.getName() + "$" + family + depth);
+    }
+
+    static class Narrow1 {
+        private Object field1_0;
+        private Object field1_1;
+        private Object field1_2;
+        private Object field1_3;
+    }
+
+    static class Narrow2 extends Narrow1 {
+        private Object field2_0;
+        private Object field2_1;
+        private Object field2_2;
+        private Object field2_3;
+    }
+
+    static class Narrow3 extends Narrow2 {
+        private Object field3_0;
+        private Object field3_1;
+        private Object field3_2;
+        private Object field3_3;
+    }
+
+    static class Narrow4 extends Narrow3 {
+        private Object field4_0;
+        private Object field4_1;
+        private Object field4_2;
+        private Object field4_3;
+    }
+
+    static class Narrow5 extends Narrow4 {
+        private Object field5_0;
+        private Object field5_1;
+        private Object field5_2;
+        private Object field5_3;
+    }
+
+    static class Narrow6 extends Narrow5 {
+        private Object field6_0;
+        private Object field6_1;
+        private Object field6_2;
+        private Object field6_3;
+    }
+
+    static class Narrow7 extends Narrow6 {
+        private Object field7_0;
+        private Object field7_1;
+        private Object field7_2;
+        private Object field7_3;
+    }
+
+    static class Narrow8 extends Narrow7 {
+        private Object field8_0;
+        private Object field8_1;
+        private Object field8_2;
+        private Object field8_3;
+    }
+
+    static class Wide1 {
+        private Object field1_0;
+        private Object field1_1;
+        private Object field1_2;
+        private Object field1_3;
+        private Object field1_4;
+        private Object field1_5;
+        private Object field1_6;
+        private Object field1_7;
+        private Object field1_8;
+        private Object field1_9;
+        private Object field1_10;
+        private Object field1_11;
+        private Object field1_12;
+        private Object field1_13;
+        private Object field1_14;
+        private Object field1_15;
+    }
+
+    static class Wide2 extends Wide1 {
+        private Object field2_0;
+        private Object field2_1;
+        private Object field2_2;
+        private Object field2_3;
+        private Object field2_4;
+        private Object field2_5;
+        private Object field2_6;
+        private Object field2_7;
+        private Object field2_8;
+        private Object field2_9;
+        private Object field2_10;
+        private Object field2_11;
+        private Object field2_12;
+        private Object field2_13;
+        private Object field2_14;
+        private Object field2_15;
+    }
+
+    static class Wide3 extends Wide2 {
+        private Object field3_0;
+        private Object field3_1;
+        private Object field3_2;
+        private Object field3_3;
+        private Object field3_4;
+        private Object field3_5;
+        private Object field3_6;
+        private Object field3_7;
+        private Object field3_8;
+        private Object field3_9;
+        private Object field3_10;
+        private Object field3_11;
+        private Object field3_12;
+        private Object field3_13;
+        private Object field3_14;
+        private Object field3_15;
+    }
+
+    static class Wide4 extends Wide3 {
+        private Object field4_0;
+        private Object field4_1;
+        private Object field4_2;
+        private Object field4_3;
+        private Object field4_4;
+        private Object field4_5;
+        private Object field4_6;
+        private Object field4_7;
+        private Object field4_8;
+        private Object field4_9;
+        private Object field4_10;
+        private Object field4_11;
+        private Object field4_12;
+        private Object field4_13;
+        private Object field4_14;
+        private Object field4_15;
+    }
+
+    static class Wide5 extends Wide4 {
+        private Object field5_0;
+        private Object field5_1;
+        private Object field5_2;
+        private Object field5_3;
+        private Object field5_4;
+        private Object field5_5;
+        private Object field5_6;
+        private Object field5_7;
+        private Object field5_8;
+        private Object field5_9;
+        private Object field5_10;
+        private Object field5_11;
+        private Object field5_12;
+        private Object field5_13;
+        private Object field5_14;
+        private Object field5_15;
+    }
+
+    static class Wide6 extends Wide5 {
+        private Object field6_0;
+        private Object field6_1;
+        private Object field6_2;
+        private Object field6_3;
+        private Object field6_4;
+        private Object field6_5;
+        private Object field6_6;
+        private Object field6_7;
+        private Object field6_8;
+        private Object field6_9;
+        private Object field6_10;
+        private Object field6_11;
+        private Object field6_12;
+        private Object field6_13;
+        private Object field6_14;
+        private Object field6_15;
+    }
+
+    static class Wide7 extends Wide6 {
+        private Object field7_0;
+        private Object field7_1;
+        private Object field7_2;
+        private Object field7_3;
+        private Object field7_4;
+        private Object field7_5;
+        private Object field7_6;
+        private Object field7_7;
+        private Object field7_8;
+        private Object field7_9;
+        private Object field7_10;
+        private Object field7_11;
+        private Object field7_12;
+        private Object field7_13;
+        private Object field7_14;
+        private Object field7_15;
+    }
+
+    static class Wide8 extends Wide7 {
+        private Object field8_0;
+        private Object field8_1;
+        private Object field8_2;
+        private Object field8_3;
+        private Object field8_4;
+        private Object field8_5;
+        private Object field8_6;
+        private Object field8_7;
+        private Object field8_8;
+        private Object field8_9;
+        private Object field8_10;
+        private Object field8_11;
+        private Object field8_12;
+        private Object field8_13;
+        private Object field8_14;
+        private Object field8_15;
+    }
+}
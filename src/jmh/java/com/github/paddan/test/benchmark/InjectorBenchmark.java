@@ -0,0 +1,106 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.benchmark;
+
+import com.github.paddan.test.injection.Injector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures {@link Injector}. The mock function of the autoInject benchmarks hands out prebuilt objects, so the numbers
+ * show the cost of the library and not of a mocking framework.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InjectorBenchmark {
+
+    private static final BenchmarkTarget.Service SERVICE = new BenchmarkTarget.Service() {
+    };
+    private static final BenchmarkTarget.Repository REPOSITORY = new BenchmarkTarget.Repository() {
+    };
+
+    private BenchmarkTarget target;
+    private Map<String, Object> values;
+    private Function<Class<?>, Object> mock;
+
+    @Setup
+    public void setup() {
+        target = new BenchmarkTarget();
+        values = Map.of("service", SERVICE, "repository", REPOSITORY, "name", "name", "superService", SERVICE);
+        mock = type -> {
+            if (type == BenchmarkTarget.Repository.class) {
+                return REPOSITORY;
+            }
+            if (type == String.class) {
+                return "mock";
+            }
+            return type.isPrimitive() ? 0 : SERVICE;
+        };
+    }
+
+    @Benchmark
+    public Object injectByName() throws IllegalAccessException {
+        return Injector.inject(SERVICE, target, "service");
+    }
+
+    @Benchmark
+    public Object injectByAnnotation() throws IllegalAccessException {
+        return Injector.inject(SERVICE, target, BenchmarkTarget.Collaborator.class);
+    }
+
+    @Benchmark
+    public Object injectStatic() throws IllegalAccessException {
+        return Injector.inject("static", BenchmarkTarget.class, "staticName");
+    }
+
+    @Benchmark
+    public int injectInt() throws IllegalAccessException {
+        return Injector.injectInt(10, target, "counter");
+    }
+
+    @Benchmark
+    public Object injectAll() throws IllegalAccessException {
+        return Injector.injectAll(values, target);
+    }
+
+    @Benchmark
+    public Map<String, Object> autoInject() {
+        return Injector.autoInject(mock, target);
+    }
+}
@@ -0,0 +1,203 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test;
+
+import com.github.paddan.test.construction.Caller;
+import com.github.paddan.test.utils.AnnotationIndex;
+import com.github.paddan.test.utils.FieldHelper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Entry points that concern the library as a whole.
+ * <p>
+ * {@link #warmUp(String)} builds the metadata the {@link com.github.paddan.test.access.Accessor}, the
+ * {@link com.github.paddan.test.injection.Injector} and the {@link Caller} look up for every class in a package, so the
+ * first test touching a class doesn't pay for it. Call it from a global setup step, before the tests run.
+ *
+ * @author patrik.lindefors
+ */
+public final class TestUtilities {
+
+    // Below this many classes a task builds the metadata itself instead of splitting
+    private static final int CLASSES_PER_TASK = 16;
+
+    private TestUtilities() {
+    }
+
+    /**
+     * Warms up every class in a package and its subpackages on the common fork-join pool. See
+     * {@link #warmUp(String, ForkJoinPool)}.
+     *
+     * @param packageName the name of the package, like {@code com.acme.service}
+     * @return the number of classes that were warmed up
+     */
+    public static int warmUp(String packageName) {
+        return warmUp(packageName, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Scans a package and its subpackages on the class path, in directories as well as jar files, and builds the field
+     * table, the field name index, the annotation index and the constructor and method dispatch tables of every class
+     * in it, in parallel on the given pool. Classes are loaded without being initialized. Classes that can't be loaded
+     * or whose members refer to missing classes are skipped.
+     *
+     * @param packageName the name of the package, like {@code com.acme.service}
+     * @param pool        the pool to build the metadata on
+     * @return the number of classes that were warmed up
+     * @throws UncheckedIOException if the class path can't be read
+     */
+    public static int warmUp(String packageName, ForkJoinPool pool) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = TestUtilities.class.getClassLoader();
+        }
+        List<String> classNames;
+        try {
+            classNames = scan(packageName, loader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't scan package " + packageName, e);
+        }
+        return pool.invoke(new WarmUp(classNames, loader, 0, classNames.size()));
+    }
+
+    private static List<String> scan(String packageName, ClassLoader loader) throws IOException {
+        String path = packageName.replace('.', '/');
+        TreeSet<String> classNames = new TreeSet<>();
+        Enumeration<URL> resources = loader.getResources(path);
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+            if ("file".equals(resource.getProtocol())) {
+                scanDirectory(resource, packageName, classNames);
+            } else {
+                URLConnection connection = resource.openConnection();
+                if (connection instanceof JarURLConnection jarConnection) {
+                    scanJar(jarConnection, path, classNames);
+                }
+            }
+        }
+        return new ArrayList<>(classNames);
+    }
+
+    private static void scanDirectory(URL resource, String packageName, TreeSet<String> classNames)
+            throws IOException {
+        Path root;
+        try {
+            root = Paths.get(resource.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid class path entry " + resource, e);
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(file -> isClassFile(file.toString())).forEach(file -> {
+                String relative = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), ".");
+                classNames.add(packageName + "." + relative.substring(0, relative.length() - ".class".length()));
+            });
+        }
+    }
+
+    private static void scanJar(JarURLConnection connection, String path, TreeSet<String> classNames)
+            throws IOException {
+        connection.setUseCaches(false);
+        try (JarFile jar = connection.getJarFile()) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith(path + "/") && isClassFile(name)) {
+                    classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+                }
+            }
+        }
+    }
+
+    private static boolean isClassFile(String name) {
+        return name.endsWith(".class") && !name.endsWith("module-info.class") && !name.endsWith("package-info.class");
+    }
+
+    /**
+     * Warms up a range of the class names, splitting it in halves until it's small enough.
+     */
+    @SuppressWarnings("serial")
+    private static final class WarmUp extends RecursiveTask<Integer> {
+        private final List<String> classNames;
+        private final ClassLoader loader;
+        private final int from;
+        private final int to;
+
+        private WarmUp(List<String> classNames, ClassLoader loader, int from, int to) {
+            this.classNames = classNames;
+            this.loader = loader;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > CLASSES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                WarmUp first = new WarmUp(classNames, loader, from, middle);
+                first.fork();
+                int second = new WarmUp(classNames, loader, middle, to).compute();
+                return first.join() + second;
+            }
+            int warmed = 0;
+            for (int i = from; i < to; i++) {
+                if (warmUp(classNames.get(i))) {
+                    warmed++;
+                }
+            }
+            return warmed;
+        }
+
+        private boolean warmUp(String className) {
+            try {
+                Class<?> type = Class.forName(className, false, loader);
+                FieldHelper.getFieldList(type);
+                FieldHelper.ensureNamesIndexed(type);
+                AnnotationIndex.of(type);
+                Caller.prepare(type);
+                return true;
+            } catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+                // Missing dependencies of the class only matter to the tests that use it
+                return false;
+            }
+        }
+    }
+}
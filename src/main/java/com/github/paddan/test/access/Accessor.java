@@ -22,19 +22,41 @@
 
 package com.github.paddan.test.access;
 
+import com.github.paddan.test.generation.GeneratedAccess;
+import com.github.paddan.test.generation.GeneratedAccessors;
+import com.github.paddan.test.metrics.LookupEvent;
+import com.github.paddan.test.metrics.Metrics;
+import com.github.paddan.test.metrics.Operation;
+import com.github.paddan.test.utils.AnnotationIndex;
+import com.github.paddan.test.utils.FieldHandle;
+import com.github.paddan.test.utils.FieldHelper;
+
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 
-import static com.github.paddan.test.utils.FieldHelper.getFields;
 
 /**
  * The `Accessor` class provides a convenient way to access private fields of an object using reflection.
  * It supports two modes of operation:
- * 1. Accessing a field by name
+ * 1. Accessing a field by name, where a name qualified with the declaring class, like `Base.id`, selects a field
+ * hidden by a subclass (see {@link FieldHelper#findField(Class, String)})
  * 2. Accessing a field annotated with a specific annotation and of a specific type
  *
  * The class provides static factory methods to create `Accessor` instances, and an `from()` method to
  * retrieve the value of the specified field from the given object.
+ *
+ * Fields that are read over and over again can be compiled into a {@link CompiledAccessor} with one of the
+ * `compile()` methods, which resolves the field once and reuses a cached field handle for every read.
+ *
+ * Fields read by name go through the {@link GeneratedAccess} of the class when one has been generated with
+ * {@link com.github.paddan.test.generation.GenerateAccess}, and through reflection otherwise.
+ *
+ * Fields deeper in an object graph can be read by following a dotted path of field names, see
+ * {@link #path(String)}.
+ *
+ * Primitive fields can be read without boxing using `getInt()`, `getLong()`, `getDouble()` and the other primitive
+ * variants.
  */
 public final class Accessor {
     private String namedField;
@@ -77,23 +99,14 @@ public final class Accessor {
      * @throws IllegalAccessException if the private field cannot be accessed
      */
     public static Object get(String field, Object from) throws IllegalAccessException {
-        Field privateField = null;
-        Class<?> type = from.getClass();
-
-        while (privateField == null) {
-            try {
-                privateField = type.getDeclaredField(field);
-            } catch (NoSuchFieldException e) {
-                type = type.getSuperclass();
-                if (type == Object.class) {
-                    throw new IllegalArgumentException("Couldn't find field " + field, e);
-                }
+        GeneratedAccess access = GeneratedAccessors.of(from.getClass());
+        if (access != null) {
+            Object value = access.get(from, field);
+            if (value != GeneratedAccess.UNHANDLED) {
+                return value;
             }
         }
-
-        privateField.setAccessible(true);
-
-        return privateField.get(from);
+        return FieldHandle.of(findField(field, from.getClass())).get(from);
     }
 
     /**
@@ -108,16 +121,206 @@ public final class Accessor {
      */
     public static Object get(Class<? extends Annotation> annotation, Class<?> type, Object from) throws
             IllegalAccessException {
+        return FieldHandle.of(findField(annotation, type, from.getClass())).get(from);
+    }
+
+    /**
+     * Retrieves the value of the specified private boolean field from the given object without boxing it.
+     *
+     * @param field the name of the private field to retrieve
+     * @param from the object containing the private field
+     * @return the value of the private field
+     * @throws IllegalAccessException if the private field cannot be accessed
+     * @throws IllegalArgumentException if the field isn't found or can't be read as a boolean
+     */
+    public static boolean getBoolean(String field, Object from) throws IllegalAccessException {
+        return FieldHandle.of(findField(field, from.getClass())).getBoolean(from);
+    }
 
-        Field[] fields = getFields(from.getClass());
-        for (Field field : fields) {
-            if (field.getAnnotation(annotation) != null && field.getType().equals(type)) {
-                field.setAccessible(true);
+    /**
+     * Retrieves the value of the specified private byte field from the given object without boxing it.
+     *
+     * @param field the name of the private field to retrieve
+     * @param from the object containing the private field
+     * @return the value of the private field
+     * @throws IllegalAccessException if the private field cannot be accessed
+     * @throws IllegalArgumentException if the field isn't found or can't be read as a byte
+     */
+    public static byte getByte(String field, Object from) throws IllegalAccessException {
+        return FieldHandle.of(findField(field, from.getClass())).getByte(from);
+    }
 
-                return field.get(from);
-            }
+    /**
+     * Retrieves the value of the specified private char field from the given object without boxing it.
+     *
+     * @param field the name of the private field to retrieve
+     * @param from the object containing the private field
+     * @return the value of the private field
+     * @throws IllegalAccessException if the private field cannot be accessed
+     * @throws IllegalArgumentException if the field isn't found or can't be read as a char
+     */
+    public static char getChar(String field, Object from) throws IllegalAccessException {
+        return FieldHandle.of(findField(field, from.getClass())).getChar(from);
+    }
+
+    /**
+     * Retrieves the value of the specified private short field from the given object without boxing it.
+     *
+     * @param field the name of the private field to retrieve
+     * @param from the object containing the private field
+     * @return the value of the private field
+     * @throws IllegalAccessException if the private field cannot be accessed
+     * @throws IllegalArgumentException if the field isn't found or can't be read as a short
+     */
+    public static short getShort(String field, Object from) throws IllegalAccessException {
+        return FieldHandle.of(findField(field, from.getClass())).getShort(from);
+    }
+
+    /**
+     * Retrieves the value of the specified private int field from the given object without boxing it.
+     *
+     * @param field the name of the private field to retrieve
+     * @param from the object containing the private field
+     * @return the value of the private field
+     * @throws IllegalAccessException if the private field cannot be accessed
+     * @throws IllegalArgumentException if the field isn't found or can't be read as a int
+     */
+    public static int getInt(String field, Object from) throws IllegalAccessException {
+        return FieldHandle.of(findField(field, from.getClass())).getInt(from);
+    }
+
+    /**
+     * Retrieves the value of the specified private long field from the given object without boxing it.
+     *
+     * @param field the name of the private field to retrieve
+     * @param from the object containing the private field
+     * @return the value of the private field
+     * @throws IllegalAccessException if the private field cannot be accessed
+     * @throws IllegalArgumentException if the field isn't found or can't be read as a long
+     */
+    public static long getLong(String field, Object from) throws IllegalAccessException {
+        return FieldHandle.of(findField(field, from.getClass())).getLong(from);
+    }
+
+    /**
+     * Retrieves the value of the specified private float field from the given object without boxing it.
+     *
+     * @param field the name of the private field to retrieve
+     * @param from the object containing the private field
+     * @return the value of the private field
+     * @throws IllegalAccessException if the private field cannot be accessed
+     * @throws IllegalArgumentException if the field isn't found or can't be read as a float
+     */
+    public static float getFloat(String field, Object from) throws IllegalAccessException {
+        return FieldHandle.of(findField(field, from.getClass())).getFloat(from);
+    }
+
+    /**
+     * Retrieves the value of the specified private double field from the given object without boxing it.
+     *
+     * @param field the name of the private field to retrieve
+     * @param from the object containing the private field
+     * @return the value of the private field
+     * @throws IllegalAccessException if the private field cannot be accessed
+     * @throws IllegalArgumentException if the field isn't found or can't be read as a double
+     */
+    public static double getDouble(String field, Object from) throws IllegalAccessException {
+        return FieldHandle.of(findField(field, from.getClass())).getDouble(from);
+    }
+
+    /**
+     * Parses a dotted path of field names, like `a.b.c`, that can be followed from an object to read or write the
+     * last field of the path. The path is parsed once and the fields along it are resolved the first time they are
+     * followed from each runtime type.
+     *
+     * @param path the field names separated by dots
+     * @return the parsed path
+     * @throws IllegalArgumentException if the path has an empty field name
+     */
+    public static PropertyPath path(String path) {
+        return PropertyPath.of(path);
+    }
+
+    /**
+     * Takes a snapshot of the values of all instance fields of the given object, including the fields declared in
+     * superclasses.
+     *
+     * @param from the object to take the snapshot of
+     * @return a read-only snapshot of the field values
+     * @throws IllegalAccessException if the fields cannot be accessed
+     */
+    public static Snapshot snapshot(Object from) throws IllegalAccessException {
+        return Snapshot.of(from);
+    }
+
+    /**
+     * Compiles a reusable accessor for the specified private field. The field is resolved once, reads through the
+     * returned accessor go straight to a cached field handle.
+     *
+     * @param field the name of the private field to access
+     * @param in the class containing the private field
+     * @param type the type of the value of the field, primitive fields are read as their wrapper type
+     * @return a compiled accessor for the field
+     * @throws IllegalAccessException if the private field cannot be accessed
+     * @throws IllegalArgumentException if the field isn't found or isn't of the given type
+     */
+    public static <T> CompiledAccessor<T> compile(String field, Class<?> in, Class<T> type)
+            throws IllegalAccessException {
+        return compile(findField(field, in), type);
+    }
+
+    /**
+     * Compiles a reusable accessor for the first field annotated with the specified annotation and of the given type.
+     *
+     * @param annotation the annotation type to search for on the fields
+     * @param type the type of the field to search for
+     * @param in the class containing the field
+     * @return a compiled accessor for the field
+     * @throws IllegalAccessException if the field cannot be accessed
+     * @throws IllegalArgumentException if no field matching the criteria is found
+     */
+    public static <T> CompiledAccessor<T> compile(Class<? extends Annotation> annotation, Class<T> type, Class<?> in)
+            throws IllegalAccessException {
+        return compile(findField(annotation, type, in), type);
+    }
+
+    private static <T> CompiledAccessor<T> compile(Field field, Class<T> type) throws IllegalAccessException {
+        Class<?> valueType = MethodType.methodType(field.getType()).wrap().returnType();
+        if (!type.isAssignableFrom(valueType)) {
+            throw new IllegalArgumentException("Field " + field.getName() + " of type " + field.getType().getName()
+                    + " can't be read as " + type.getName());
+        }
+        return new CompiledAccessor<>(FieldHandle.of(field), type);
+    }
+
+    static Field findField(String field, Class<?> in) {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.FIELD);
+        boolean cacheHit = start == 0L && !event.isEnabled() || FieldHelper.ensureNamesIndexed(in);
+        Field found = FieldHelper.findField(in, field);
+        if (found == null) {
+            Metrics.failedLookup(Operation.FIELD, in, field, start, cacheHit);
+            event.failed(in, field, cacheHit);
+            throw new IllegalArgumentException("Couldn't find field " + field);
+        }
+        Metrics.lookup(Operation.FIELD, in, field, start, cacheHit);
+        event.found(in, field, cacheHit);
+        return found;
+    }
+
+    private static Field findField(Class<? extends Annotation> annotation, Class<?> type, Class<?> in) {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.ANNOTATED_FIELD);
+        boolean cacheHit = start == 0L && !event.isEnabled() || AnnotationIndex.ensureBuilt(in);
+        Field field = AnnotationIndex.of(in).findByType(annotation, type);
+        if (field != null) {
+            Metrics.lookup(Operation.ANNOTATED_FIELD, in, annotation.getName(), start, cacheHit);
+            event.found(in, annotation.getName(), cacheHit);
+            return field;
         }
 
+        Metrics.failedLookup(Operation.ANNOTATED_FIELD, in, annotation.getName(), start, cacheHit);
+        event.failed(in, annotation.getName(), cacheHit);
         throw new IllegalArgumentException("Couldn't find field annotated with " + annotation);
     }
 
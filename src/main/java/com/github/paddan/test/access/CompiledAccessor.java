@@ -0,0 +1,149 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.access;
+
+import com.github.paddan.test.utils.FieldHandle;
+
+import java.lang.reflect.Field;
+
+/**
+ * A reusable, thread safe accessor for a single field, created by {@link Accessor#compile(String, Class, Class)} or
+ * {@link Accessor#compile(Class, Class, Class)}. The field is resolved once when the accessor is compiled, every read
+ * after that goes straight to a cached field handle.
+ *
+ * @param <T> the type of the field value
+ */
+public final class CompiledAccessor<T> {
+    private final FieldHandle handle;
+    private final Class<T> type;
+
+    CompiledAccessor(FieldHandle handle, Class<T> type) {
+        this.handle = handle;
+        this.type = type;
+    }
+
+    /**
+     * Retrieves the value of the compiled field from the given object.
+     *
+     * @param from the object containing the field, ignored for static fields
+     * @return the value of the field
+     */
+    public T get(Object from) {
+        return type.cast(handle.get(from));
+    }
+
+    /**
+     * Retrieves the value of the compiled boolean field from the given object without boxing it.
+     *
+     * @param from the object containing the field, ignored for static fields
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field can't be read as a boolean
+     */
+    public boolean getBoolean(Object from) {
+        return handle.getBoolean(from);
+    }
+
+    /**
+     * Retrieves the value of the compiled byte field from the given object without boxing it.
+     *
+     * @param from the object containing the field, ignored for static fields
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field can't be read as a byte
+     */
+    public byte getByte(Object from) {
+        return handle.getByte(from);
+    }
+
+    /**
+     * Retrieves the value of the compiled char field from the given object without boxing it.
+     *
+     * @param from the object containing the field, ignored for static fields
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field can't be read as a char
+     */
+    public char getChar(Object from) {
+        return handle.getChar(from);
+    }
+
+    /**
+     * Retrieves the value of the compiled short field from the given object without boxing it.
+     *
+     * @param from the object containing the field, ignored for static fields
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field can't be read as a short
+     */
+    public short getShort(Object from) {
+        return handle.getShort(from);
+    }
+
+    /**
+     * Retrieves the value of the compiled int field from the given object without boxing it.
+     *
+     * @param from the object containing the field, ignored for static fields
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field can't be read as a int
+     */
+    public int getInt(Object from) {
+        return handle.getInt(from);
+    }
+
+    /**
+     * Retrieves the value of the compiled long field from the given object without boxing it.
+     *
+     * @param from the object containing the field, ignored for static fields
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field can't be read as a long
+     */
+    public long getLong(Object from) {
+        return handle.getLong(from);
+    }
+
+    /**
+     * Retrieves the value of the compiled float field from the given object without boxing it.
+     *
+     * @param from the object containing the field, ignored for static fields
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field can't be read as a float
+     */
+    public float getFloat(Object from) {
+        return handle.getFloat(from);
+    }
+
+    /**
+     * Retrieves the value of the compiled double field from the given object without boxing it.
+     *
+     * @param from the object containing the field, ignored for static fields
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field can't be read as a double
+     */
+    public double getDouble(Object from) {
+        return handle.getDouble(from);
+    }
+
+    /**
+     * @return the field this accessor reads
+     */
+    public Field getField() {
+        return handle.getField();
+    }
+}
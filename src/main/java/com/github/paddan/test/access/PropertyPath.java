@@ -0,0 +1,232 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.access;
+
+import com.github.paddan.test.utils.FieldHandle;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A dotted chain of field names, like {@code a.b.c}, created by {@link Accessor#path(String)}. The path is parsed
+ * once, and every hop remembers the field handles it resolved for the last few runtime types it has seen, so
+ * following a path again costs about the same as a chain of hand written getters. Each hop is a plain field name
+ * and resolves to the most derived field with that name.
+ * <p>
+ * Paths are thread safe and cached by their text. The types a hop has seen are held weakly, so a cached path doesn't
+ * keep a class or its class loader reachable.
+ */
+public final class PropertyPath {
+    private static final int MAX_CACHED_PATHS = 256;
+    // Hops that see more runtime types than this resolve the extra types on every use
+    private static final int MAX_TYPES_PER_HOP = 4;
+
+    private static final ConcurrentMap<String, PropertyPath> PATHS = new ConcurrentHashMap<>();
+
+    private final String path;
+    private final Hop[] hops;
+
+    private PropertyPath(String path, Hop[] hops) {
+        this.path = path;
+        this.hops = hops;
+    }
+
+    /**
+     * Returns the parsed path, reusing an earlier parse of the same text.
+     *
+     * @param path the field names separated by dots
+     * @return the parsed path
+     * @throws IllegalArgumentException if the path has an empty field name
+     */
+    static PropertyPath of(String path) {
+        PropertyPath parsed = PATHS.get(path);
+        if (parsed == null) {
+            parsed = parse(path);
+            if (PATHS.size() < MAX_CACHED_PATHS) {
+                PropertyPath cached = PATHS.putIfAbsent(path, parsed);
+                if (cached != null) {
+                    parsed = cached;
+                }
+            }
+        }
+        return parsed;
+    }
+
+    private static PropertyPath parse(String path) {
+        String[] names = path.split("\\.", -1);
+        Hop[] hops = new Hop[names.length];
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].isEmpty()) {
+                throw new IllegalArgumentException("Invalid path " + path);
+            }
+            hops[i] = new Hop(names[i]);
+        }
+        return new PropertyPath(path, hops);
+    }
+
+    /**
+     * Follows the path from the given object and retrieves the value of its last field.
+     *
+     * @param from the object the first field of the path is read from
+     * @return the value of the last field of the path
+     * @throws IllegalAccessException if a field cannot be accessed
+     * @throws IllegalArgumentException if a field isn't found or a field before the last one is null
+     */
+    public Object from(Object from) throws IllegalAccessException {
+        return follow(from.getClass(), from, hops.length);
+    }
+
+    /**
+     * Follows the path from a static field of the given class and retrieves the value of its last field.
+     *
+     * @param in the class declaring the static field the path starts with
+     * @return the value of the last field of the path
+     * @throws IllegalAccessException if a field cannot be accessed
+     * @throws IllegalArgumentException if a field isn't found or a field before the last one is null
+     */
+    public Object from(Class<?> in) throws IllegalAccessException {
+        return follow(in, null, hops.length);
+    }
+
+    /**
+     * Follows the path from the given object and writes a value into its last field.
+     *
+     * @param into  the object the first field of the path is read from
+     * @param value the value to write
+     * @throws IllegalAccessException if a field cannot be accessed
+     * @throws IllegalArgumentException if a field isn't found or a field before the last one is null
+     */
+    public void set(Object into, Object value) throws IllegalAccessException {
+        set(into.getClass(), into, value);
+    }
+
+    /**
+     * Follows the path from a static field of the given class and writes a value into its last field.
+     *
+     * @param in    the class declaring the static field the path starts with
+     * @param value the value to write
+     * @throws IllegalAccessException if a field cannot be accessed
+     * @throws IllegalArgumentException if a field isn't found or a field before the last one is null
+     */
+    public void set(Class<?> in, Object value) throws IllegalAccessException {
+        set(in, null, value);
+    }
+
+    private void set(Class<?> rootType, Object root, Object value) throws IllegalAccessException {
+        int last = hops.length - 1;
+        Object parent = follow(rootType, root, last);
+        Class<?> type = rootType;
+        if (last > 0) {
+            type = typeOf(parent, last);
+        }
+        hops[last].handle(type).set(parent, value);
+    }
+
+    private Object follow(Class<?> rootType, Object root, int hopCount) throws IllegalAccessException {
+        Object current = root;
+        Class<?> type = rootType;
+        for (int i = 0; i < hopCount; i++) {
+            if (i > 0) {
+                type = typeOf(current, i);
+            }
+            current = hops[i].handle(type).get(current);
+        }
+        return current;
+    }
+
+    private Class<?> typeOf(Object value, int hop) {
+        if (value == null) {
+            StringBuilder followed = new StringBuilder(hops[0].name);
+            for (int i = 1; i < hop; i++) {
+                followed.append('.').append(hops[i].name);
+            }
+            throw new IllegalArgumentException("Couldn't follow path " + path + ", " + followed + " is null");
+        }
+        return value.getClass();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    /**
+     * One field name of a path with a small copy on write cache of the handles it resolved, keyed by the exact
+     * runtime type they were resolved in.
+     */
+    private static final class Hop {
+        private final String name;
+        private volatile Resolved[] resolved = new Resolved[0];
+
+        private Hop(String name) {
+            this.name = name;
+        }
+
+        private FieldHandle handle(Class<?> type) throws IllegalAccessException {
+            FieldHandle handle = cached(resolved, type);
+            if (handle != null) {
+                return handle;
+            }
+
+            handle = FieldHandle.of(Accessor.findField(name, type));
+            synchronized (this) {
+                // Entries of types that have been unloaded make room for new ones
+                Resolved[] current = Arrays.stream(resolved).filter(entry -> entry.get() != null)
+                        .toArray(Resolved[]::new);
+                if (current.length < MAX_TYPES_PER_HOP && cached(current, type) == null) {
+                    Resolved[] grown = Arrays.copyOf(current, current.length + 1);
+                    grown[current.length] = new Resolved(type, handle);
+                    resolved = grown;
+                } else if (current.length < resolved.length) {
+                    resolved = current;
+                }
+            }
+            return handle;
+        }
+
+        private static FieldHandle cached(Resolved[] entries, Class<?> type) {
+            for (Resolved entry : entries) {
+                if (entry.get() == type) {
+                    return entry.handle.get();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A type a hop was resolved in and its handle, both held weakly. The handle is cached by {@link FieldHandle} for
+     * as long as the class declaring its field is loaded, so it isn't cleared while the type is still reachable.
+     */
+    private static final class Resolved extends WeakReference<Class<?>> {
+        private final WeakReference<FieldHandle> handle;
+
+        private Resolved(Class<?> type, FieldHandle handle) {
+            super(type);
+            this.handle = new WeakReference<>(handle);
+        }
+    }
+}
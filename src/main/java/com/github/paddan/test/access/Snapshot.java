@@ -0,0 +1,174 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.access;
+
+import com.github.paddan.test.utils.FieldHandle;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.paddan.test.utils.FieldHelper.getFieldList;
+
+/**
+ * A read-only copy of the values of all instance fields of an object, created by {@link Accessor#snapshot(Object)}.
+ * <p>
+ * The fields are ordered like {@link com.github.paddan.test.utils.FieldHelper#getFields(Class)}, superclass fields
+ * first, and can be looked up by index or by name. When a subclass declares a field with the same name as a field in
+ * a superclass, looking it up by name returns the value of the subclass field. The fields to read are resolved once
+ * per class into a plan of cached field handles, so taking a snapshot is a single pass over an array.
+ */
+public final class Snapshot {
+
+    private static final ClassValue<Plan> PLANS = new ClassValue<>() {
+        @Override
+        protected Plan computeValue(Class<?> type) {
+            try {
+                return new Plan(type);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private final Plan plan;
+    private final Object[] values;
+
+    private Snapshot(Plan plan, Object[] values) {
+        this.plan = plan;
+        this.values = values;
+    }
+
+    static Snapshot of(Object from) throws IllegalAccessException {
+        Plan plan;
+        try {
+            plan = PLANS.get(from.getClass());
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IllegalAccessException illegalAccess) {
+                throw illegalAccess;
+            }
+            throw e;
+        }
+
+        FieldHandle[] handles = plan.handles;
+        Object[] values = new Object[handles.length];
+        for (int i = 0; i < handles.length; i++) {
+            values[i] = handles[i].get(from);
+        }
+        return new Snapshot(plan, values);
+    }
+
+    /**
+     * @return the number of fields in the snapshot
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Retrieves the value of a field by its index.
+     *
+     * @param index the index of the field
+     * @return the value of the field when the snapshot was taken
+     */
+    public Object get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Retrieves the value of a field by its name.
+     *
+     * @param name the name of the field
+     * @return the value of the field when the snapshot was taken
+     * @throws IllegalArgumentException if the object has no field with the name
+     */
+    public Object get(String name) {
+        return values[indexOf(name)];
+    }
+
+    /**
+     * Looks up the index of a field by its name.
+     *
+     * @param name the name of the field
+     * @return the index of the field
+     * @throws IllegalArgumentException if the object has no field with the name
+     */
+    public int indexOf(String name) {
+        Integer index = plan.indexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Couldn't find field " + name);
+        }
+        return index;
+    }
+
+    /**
+     * @param index the index of the field
+     * @return the name of the field
+     */
+    public String getName(int index) {
+        return plan.handles[index].getField().getName();
+    }
+
+    /**
+     * @param index the index of the field
+     * @return the field
+     */
+    public Field getField(int index) {
+        return plan.handles[index].getField();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Snapshot{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(getName(i)).append('=').append(values[i]);
+        }
+        return builder.append('}').toString();
+    }
+
+    private static final class Plan {
+        private final FieldHandle[] handles;
+        private final Map<String, Integer> indexes;
+
+        private Plan(Class<?> type) throws IllegalAccessException {
+            List<FieldHandle> handles = new ArrayList<>();
+            Map<String, Integer> indexes = new HashMap<>();
+            for (Field field : getFieldList(type)) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                // Subclass fields come later in the table, so they replace the superclass fields they hide
+                indexes.put(field.getName(), handles.size());
+                handles.add(FieldHandle.of(field));
+            }
+            this.handles = handles.toArray(new FieldHandle[0]);
+            this.indexes = Map.copyOf(indexes);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.construction;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates instances without running any of their constructors, the way serialization does. The JDK's
+ * {@code sun.reflect.ReflectionFactory} makes a constructor for each class that allocates an instance of it but only
+ * runs the constructor of {@link Object}, so every field keeps its default value. The factory is looked up once through
+ * a method handle rather than linked against, as it's an internal API of the {@code jdk.unsupported} module.
+ * <p>
+ * Allocating constructors are cached per class.
+ */
+final class Allocators {
+
+    private static final Constructor<Object> OBJECT_CONSTRUCTOR;
+
+    static {
+        try {
+            OBJECT_CONSTRUCTOR = Object.class.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // ReflectionFactory.newConstructorForSerialization(Class, Constructor) bound to the factory, null if there is none
+    private static final MethodHandle SERIALIZATION_CONSTRUCTORS = serializationConstructors();
+
+    private static final ClassValue<Constructor<?>> ALLOCATORS = new ClassValue<>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            Constructor<?> allocator;
+            try {
+                allocator = (Constructor<?>) SERIALIZATION_CONSTRUCTORS.invokeExact(type, OBJECT_CONSTRUCTOR);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+            allocator.setAccessible(true);
+            return allocator;
+        }
+    };
+
+    private Allocators() {
+    }
+
+    private static MethodHandle serializationConstructors() {
+        try {
+            Class<?> factoryType = Class.forName("sun.reflect.ReflectionFactory");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Object factory = lookup.findStatic(factoryType, "getReflectionFactory", MethodType.methodType(factoryType))
+                    .invoke();
+            return lookup.findVirtual(factoryType, "newConstructorForSerialization",
+                            MethodType.methodType(Constructor.class, Class.class, Constructor.class))
+                    .bindTo(factory);
+        } catch (Throwable t) {
+            // The module isn't there, allocate reports it
+            return null;
+        }
+    }
+
+    /**
+     * Allocates an instance of a class without running its constructors.
+     *
+     * @param type the class to allocate an instance of
+     * @return the new instance with all fields set to their default values
+     * @throws InstantiationException if the class is abstract, an interface, an array, a primitive or an enum
+     */
+    static <T> T allocate(Class<T> type) throws InstantiationException {
+        if (type.isPrimitive() || type.isArray() || type.isInterface() || type.isEnum()
+                || Modifier.isAbstract(type.getModifiers())) {
+            throw new InstantiationException("Can't allocate an instance of " + type.getName());
+        }
+        if (SERIALIZATION_CONSTRUCTORS == null) {
+            throw new InstantiationException("Can't allocate " + type.getName()
+                    + " without a constructor, the jdk.unsupported module is missing");
+        }
+        try {
+            return type.cast(ALLOCATORS.get(type).newInstance());
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            // Only the constructor of Object runs, which neither throws nor checks access
+            InstantiationException failure = new InstantiationException("Couldn't allocate " + type.getName());
+            failure.initCause(e);
+            throw failure;
+        }
+    }
+}
@@ -22,9 +22,19 @@
 
 package com.github.paddan.test.construction;
 
+import com.github.paddan.test.generation.GeneratedAccess;
+import com.github.paddan.test.generation.GeneratedAccessors;
+import com.github.paddan.test.metrics.InvocationEvent;
+import com.github.paddan.test.metrics.LookupEvent;
+import com.github.paddan.test.metrics.Metrics;
+import com.github.paddan.test.metrics.Operation;
+
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Provides utility methods for constructing objects and invoking methods using reflection.
@@ -32,14 +42,43 @@ import java.lang.reflect.Method;
  * The {@link #construct(Class, Object...)} method allows creating an instance of a class with the specified constructor arguments.
  * The {@link #callStatic(Class, String, Object...)} method allows invoking a static method on a class with the specified arguments.
  * The {@link #callMethod(Object, String, Object...)} method allows invoking an instance method on an object with the specified arguments.
+ * <p>
+ * Overloads are resolved like the Java compiler does, using the runtime classes of the arguments: the most specific
+ * applicable member wins, primitive arguments are widened and variable arity members take the trailing arguments in
+ * an array. A call with no most specific overload fails like a call with no matching one.
+ * <p>
+ * By default the resolved constructors and methods are invoked reflectively. Calling
+ * {@link #useGeneratedInvokers(boolean)} switches to invokers generated with the
+ * {@link java.lang.invoke.LambdaMetafactory}, which are cached per constructor and method and can be inlined by the JIT.
+ * <p>
+ * Classes with a {@link GeneratedAccess}, generated with {@link com.github.paddan.test.generation.GenerateAccess}, are
+ * called through it without any reflection whenever it handles the member and arguments.
+ * <p>
+ * Each method also has fixed arity overloads for up to four arguments. With generated invokers turned on they don't
+ * put the arguments in an array, so once a call has been made a repeated call with arguments of the same classes
+ * doesn't allocate, apart from boxing primitive arguments and results. With them turned off they call reflectively
+ * like the variable arity methods.
  *
  * @author patrik.lindefors
  */
 public final class Caller {
 
+    private static volatile boolean generatedInvokers;
+
     private Caller() {
     }
 
+    /**
+     * Turns generated invokers on or off for {@link #construct(Class, Object...)},
+     * {@link #callStatic(Class, String, Object...)}, {@link #callMethod(Object, String, Object...)} and their fixed arity
+     * overloads. The invoker for a constructor or method is generated the first time it's called and then reused.
+     *
+     * @param enabled true to call through generated invokers, false to use reflection
+     */
+    public static void useGeneratedInvokers(boolean enabled) {
+        generatedInvokers = enabled;
+    }
+
     /**
      * Constructs an object from the specified class.
      *
@@ -51,20 +90,45 @@ public final class Caller {
             throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
 
         Object[] safeArgs = args == null ? new Object[0] : args;
-        Constructor<? extends T> constructor;
+        GeneratedAccess access = GeneratedAccessors.of(clazz);
+        if (access != null) {
+            Object instance;
+            try {
+                instance = access.construct(safeArgs);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+            if (instance != GeneratedAccess.UNHANDLED) {
+                return clazz.cast(instance);
+            }
+        }
+        ResolutionCache.Resolution resolution;
         if (args == null) {
             try {
-                constructor = findConstructor(clazz, safeArgs);
+                resolution = findConstructor(clazz, safeArgs);
             } catch (NoSuchMethodException noArgsMissing) {
                 safeArgs = new Object[]{null};
-                constructor = findConstructor(clazz, safeArgs);
+                resolution = findConstructor(clazz, safeArgs);
             }
         } else {
-            constructor = findConstructor(clazz, safeArgs);
+            resolution = findConstructor(clazz, safeArgs);
         }
-        constructor.setAccessible(true);
+        Constructor<?> constructor = (Constructor<?>) resolution.getMember();
+        safeArgs = resolution.arguments(safeArgs);
+        InvocationEvent event = InvocationEvent.start();
+        boolean cacheHit = event.isEnabled() && generatedInvokers && Invokers.isCached(constructor);
+        try {
+            if (generatedInvokers) {
+                @SuppressWarnings("unchecked")
+                T instance = (T) invoke(constructor, null, safeArgs);
+                return instance;
+            }
+            constructor.setAccessible(true);
 
-        return constructor.newInstance(safeArgs);
+            return clazz.cast(constructor.newInstance(safeArgs));
+        } finally {
+            event.invoked(clazz, ResolutionCache.CONSTRUCTOR, cacheHit);
+        }
     }
 
     /**
@@ -81,20 +145,31 @@ public final class Caller {
             throws IllegalAccessException, InvocationTargetException {
 
         Object[] safeArgs = args == null ? new Object[0] : args;
-        Method method;
+        GeneratedAccess access = GeneratedAccessors.of(invokeOn);
+        if (access != null) {
+            Object result;
+            try {
+                result = access.invokeStatic(name, safeArgs);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+            if (result != GeneratedAccess.UNHANDLED) {
+                return result;
+            }
+        }
+        ResolutionCache.Resolution resolution;
         if (args == null) {
             try {
-                method = getMethod(name, safeArgs, invokeOn);
+                resolution = getMethod(name, safeArgs, invokeOn);
             } catch (IllegalArgumentException noArgsMissing) {
                 safeArgs = new Object[]{null};
-                method = getMethod(name, safeArgs, invokeOn);
+                resolution = getMethod(name, safeArgs, invokeOn);
             }
         } else {
-            method = getMethod(name, safeArgs, invokeOn);
+            resolution = getMethod(name, safeArgs, invokeOn);
         }
 
-        method.setAccessible(true);
-        return method.invoke(null, safeArgs);
+        return invokeMethod((Method) resolution.getMember(), invokeOn, null, resolution.arguments(safeArgs));
     }
 
     /**
@@ -111,102 +186,520 @@ public final class Caller {
             throws IllegalAccessException, InvocationTargetException {
 
         Object[] safeArgs = args == null ? new Object[0] : args;
-        Method method;
+        GeneratedAccess access = GeneratedAccessors.of(invokeOn.getClass());
+        if (access != null) {
+            Object result;
+            try {
+                result = access.invoke(invokeOn, name, safeArgs);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+            if (result != GeneratedAccess.UNHANDLED) {
+                return result;
+            }
+        }
+        ResolutionCache.Resolution resolution;
         if (args == null) {
             try {
-                method = getMethod(name, safeArgs, invokeOn.getClass());
+                resolution = getMethod(name, safeArgs, invokeOn.getClass());
             } catch (IllegalArgumentException noArgsMissing) {
                 safeArgs = new Object[]{null};
-                method = getMethod(name, safeArgs, invokeOn.getClass());
+                resolution = getMethod(name, safeArgs, invokeOn.getClass());
             }
         } else {
-            method = getMethod(name, safeArgs, invokeOn.getClass());
+            resolution = getMethod(name, safeArgs, invokeOn.getClass());
         }
-        method.setAccessible(true);
 
-        return method.invoke(invokeOn, safeArgs);
+        return invokeMethod((Method) resolution.getMember(), invokeOn.getClass(), invokeOn,
+                resolution.arguments(safeArgs));
     }
 
-    private static Method getMethod(String name, Object[] args, Class<?> type) {
-        Class<?> classType = type;
-
-        while (classType != null) {
-            Method[] methods = classType.getDeclaredMethods();
-            for (Method candidate : methods) {
-                if (!candidate.getName().equals(name)) {
-                    continue;
-                }
-                if (areParametersCompatible(candidate.getParameterTypes(), args)) {
-                    return candidate;
+    /**
+     * Builds the overload dispatch tables of the constructors of the specified class and of every method name in it and
+     * its superclasses below {@link Object}, which are otherwise built by the first call to each of them. Calls still
+     * resolve their arguments against the tables and cache the outcome as usual.
+     *
+     * @param clazz The class to prepare
+     */
+    public static void prepare(Class<?> clazz) {
+        DispatchTable.constructors(clazz);
+        Set<String> names = new HashSet<>();
+        for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (names.add(method.getName())) {
+                    DispatchTable.methods(clazz, method.getName());
                 }
             }
-            classType = classType.getSuperclass();
         }
+    }
 
-        throw new IllegalArgumentException("Couldn't find method " + name);
+    /**
+     * Creates an instance of the specified class without running any of its constructors, or the constructors of its
+     * superclasses. All fields of the instance have their default values, ready to be filled in with the
+     * {@link com.github.paddan.test.injection.Injector}. The allocation is set up once per class, so allocating many
+     * instances is cheap.
+     *
+     * @param clazz Type of object to create
+     * @return The newly created object
+     * @throws InstantiationException If the class is abstract, an interface, an array, a primitive or an enum
+     */
+    public static <T> T allocate(Class<T> clazz) throws InstantiationException {
+        return Allocators.allocate(clazz);
     }
 
-    private static <T> Constructor<? extends T> findConstructor(Class<? extends T> clazz, Object[] args)
-            throws NoSuchMethodException {
-        Constructor<?>[] constructors = clazz.getDeclaredConstructors();
-        for (Constructor<?> candidate : constructors) {
-            if (areParametersCompatible(candidate.getParameterTypes(), args)) {
-                @SuppressWarnings("unchecked")
-                Constructor<? extends T> ctor = (Constructor<? extends T>) candidate;
-                return ctor;
-            }
+    /**
+     * Constructs an object from the specified class using a constructor taking no arguments, without putting the
+     * arguments in an array. See {@link #construct(Class, Object...)}.
+     *
+     * @param clazz Type of object to create
+     * @return The newly created object
+     */
+    public static <T> T construct(Class<? extends T> clazz)
+            throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+        return constructFixed(clazz, 0, null, null, null, null);
+    }
+
+    /**
+     * Constructs an object from the specified class using a constructor taking one argument, without putting the
+     * arguments in an array. See {@link #construct(Class, Object...)}.
+     *
+     * @param clazz Type of object to create
+     * @param a0 The first argument
+     * @return The newly created object
+     */
+    public static <T> T construct(Class<? extends T> clazz, Object a0)
+            throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+        return constructFixed(clazz, 1, a0, null, null, null);
+    }
+
+    /**
+     * Constructs an object from the specified class using a constructor taking two arguments, without putting the
+     * arguments in an array. See {@link #construct(Class, Object...)}.
+     *
+     * @param clazz Type of object to create
+     * @param a0 The first argument
+     * @param a1 The second argument
+     * @return The newly created object
+     */
+    public static <T> T construct(Class<? extends T> clazz, Object a0, Object a1)
+            throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+        return constructFixed(clazz, 2, a0, a1, null, null);
+    }
+
+    /**
+     * Constructs an object from the specified class using a constructor taking three arguments, without putting the
+     * arguments in an array. See {@link #construct(Class, Object...)}.
+     *
+     * @param clazz Type of object to create
+     * @param a0 The first argument
+     * @param a1 The second argument
+     * @param a2 The third argument
+     * @return The newly created object
+     */
+    public static <T> T construct(Class<? extends T> clazz, Object a0, Object a1, Object a2)
+            throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+        return constructFixed(clazz, 3, a0, a1, a2, null);
+    }
+
+    /**
+     * Constructs an object from the specified class using a constructor taking four arguments, without putting the
+     * arguments in an array. See {@link #construct(Class, Object...)}.
+     *
+     * @param clazz Type of object to create
+     * @param a0 The first argument
+     * @param a1 The second argument
+     * @param a2 The third argument
+     * @param a3 The fourth argument
+     * @return The newly created object
+     */
+    public static <T> T construct(Class<? extends T> clazz, Object a0, Object a1, Object a2, Object a3)
+            throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+        return constructFixed(clazz, 4, a0, a1, a2, a3);
+    }
+
+    /**
+     * Invokes the specified static method taking no arguments on the given class, without putting the arguments in an
+     * array. See {@link #callStatic(Class, String, Object...)}.
+     *
+     * @param invokeOn The class on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callStatic(Class<?> invokeOn, String name)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn, null, name, 0, null, null, null, null);
+    }
+
+    /**
+     * Invokes the specified static method taking one argument on the given class, without putting the arguments in an
+     * array. See {@link #callStatic(Class, String, Object...)}.
+     *
+     * @param invokeOn The class on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @param a0 The first argument
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callStatic(Class<?> invokeOn, String name, Object a0)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn, null, name, 1, a0, null, null, null);
+    }
+
+    /**
+     * Invokes the specified static method taking two arguments on the given class, without putting the arguments in an
+     * array. See {@link #callStatic(Class, String, Object...)}.
+     *
+     * @param invokeOn The class on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @param a0 The first argument
+     * @param a1 The second argument
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callStatic(Class<?> invokeOn, String name, Object a0, Object a1)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn, null, name, 2, a0, a1, null, null);
+    }
+
+    /**
+     * Invokes the specified static method taking three arguments on the given class, without putting the arguments in an
+     * array. See {@link #callStatic(Class, String, Object...)}.
+     *
+     * @param invokeOn The class on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @param a0 The first argument
+     * @param a1 The second argument
+     * @param a2 The third argument
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callStatic(Class<?> invokeOn, String name, Object a0, Object a1, Object a2)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn, null, name, 3, a0, a1, a2, null);
+    }
+
+    /**
+     * Invokes the specified static method taking four arguments on the given class, without putting the arguments in an
+     * array. See {@link #callStatic(Class, String, Object...)}.
+     *
+     * @param invokeOn The class on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @param a0 The first argument
+     * @param a1 The second argument
+     * @param a2 The third argument
+     * @param a3 The fourth argument
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callStatic(Class<?> invokeOn, String name, Object a0, Object a1, Object a2, Object a3)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn, null, name, 4, a0, a1, a2, a3);
+    }
+
+    /**
+     * Invokes the specified method taking no arguments on the given object, without putting the arguments in an array.
+     * See {@link #callMethod(Object, String, Object...)}.
+     *
+     * @param invokeOn The object on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callMethod(Object invokeOn, String name)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn.getClass(), invokeOn, name, 0, null, null, null, null);
+    }
+
+    /**
+     * Invokes the specified method taking one argument on the given object, without putting the arguments in an array.
+     * See {@link #callMethod(Object, String, Object...)}.
+     *
+     * @param invokeOn The object on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @param a0 The first argument
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callMethod(Object invokeOn, String name, Object a0)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn.getClass(), invokeOn, name, 1, a0, null, null, null);
+    }
+
+    /**
+     * Invokes the specified method taking two arguments on the given object, without putting the arguments in an array.
+     * See {@link #callMethod(Object, String, Object...)}.
+     *
+     * @param invokeOn The object on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @param a0 The first argument
+     * @param a1 The second argument
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callMethod(Object invokeOn, String name, Object a0, Object a1)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn.getClass(), invokeOn, name, 2, a0, a1, null, null);
+    }
+
+    /**
+     * Invokes the specified method taking three arguments on the given object, without putting the arguments in an array.
+     * See {@link #callMethod(Object, String, Object...)}.
+     *
+     * @param invokeOn The object on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @param a0 The first argument
+     * @param a1 The second argument
+     * @param a2 The third argument
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callMethod(Object invokeOn, String name, Object a0, Object a1, Object a2)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn.getClass(), invokeOn, name, 3, a0, a1, a2, null);
+    }
+
+    /**
+     * Invokes the specified method taking four arguments on the given object, without putting the arguments in an array.
+     * See {@link #callMethod(Object, String, Object...)}.
+     *
+     * @param invokeOn The object on which to invoke the method.
+     * @param name The name of the method to invoke.
+     * @param a0 The first argument
+     * @param a1 The second argument
+     * @param a2 The third argument
+     * @param a3 The fourth argument
+     * @return The result of invoking the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     * @throws InvocationTargetException If the method throws an exception.
+     */
+    public static Object callMethod(Object invokeOn, String name, Object a0, Object a1, Object a2, Object a3)
+            throws IllegalAccessException, InvocationTargetException {
+        return callFixed(invokeOn.getClass(), invokeOn, name, 4, a0, a1, a2, a3);
+    }
+
+    /**
+     * Returns how many constructor and method lookups have been answered by the resolution cache, failed lookups
+     * included. Once every call in a test has been made once, further calls should only add hits.
+     *
+     * @return the number of cache hits since the statistics were last reset
+     */
+    public static long getResolutionCacheHits() {
+        return ResolutionCache.hits();
+    }
+
+    /**
+     * Returns how many constructor and method lookups had to scan the declared members of a class.
+     *
+     * @return the number of cache misses since the statistics were last reset
+     */
+    public static long getResolutionCacheMisses() {
+        return ResolutionCache.misses();
+    }
+
+    /**
+     * Resets the resolution cache hit and miss counters. The cached resolutions are kept.
+     */
+    public static void resetResolutionCacheStatistics() {
+        ResolutionCache.resetStatistics();
+    }
+
+    private static <T> T constructFixed(Class<? extends T> clazz, int count, Object a0, Object a1, Object a2, Object a3)
+            throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+        if (!generatedInvokers || GeneratedAccessors.of(clazz) != null) {
+            return construct(clazz, arguments(count, a0, a1, a2, a3));
         }
-        throw new NoSuchMethodException("Couldn't find constructor for " + clazz.getName());
+        ResolutionCache.Resolution resolution = findConstructor(clazz, count, a0, a1, a2, a3);
+        return clazz.cast(invoke(resolution, clazz, ResolutionCache.CONSTRUCTOR, null, count, a0, a1, a2, a3));
     }
 
-    private static boolean areParametersCompatible(Class<?>[] parameterTypes, Object[] args) {
-        if (parameterTypes.length != args.length) {
-            return false;
+    private static Object callFixed(Class<?> type, Object target, String name, int count, Object a0, Object a1,
+                                    Object a2, Object a3) throws IllegalAccessException, InvocationTargetException {
+        if (!generatedInvokers || GeneratedAccessors.of(type) != null) {
+            Object[] args = arguments(count, a0, a1, a2, a3);
+            return target == null ? callStatic(type, name, args) : callMethod(target, name, args);
         }
-        for (int i = 0; i < parameterTypes.length; i++) {
-            if (!isCompatible(parameterTypes[i], args[i])) {
-                return false;
+        ResolutionCache.Resolution resolution = getMethod(name, type, count, a0, a1, a2, a3);
+        return invoke(resolution, type, name, target, count, a0, a1, a2, a3);
+    }
+
+    /**
+     * Invokes a member through its generated invoker without an argument array. Arguments that need conversion are
+     * put in an array.
+     */
+    private static Object invoke(ResolutionCache.Resolution resolution, Class<?> type, String name, Object target,
+                                 int count, Object a0, Object a1, Object a2, Object a3)
+            throws IllegalAccessException, InvocationTargetException {
+        Executable executable = resolution.getMember();
+        InvocationEvent event = InvocationEvent.start();
+        boolean cacheHit = event.isEnabled() && Invokers.isCached(executable);
+        try {
+            if (resolution.needsConversion()) {
+                return invoke(executable, target, resolution.arguments(arguments(count, a0, a1, a2, a3)));
+            }
+            Invokers.Invoker invoker = Invokers.of(executable);
+            try {
+                return switch (count) {
+                    case 0 -> invoker.invoke0(target);
+                    case 1 -> invoker.invoke1(target, a0);
+                    case 2 -> invoker.invoke2(target, a0, a1);
+                    case 3 -> invoker.invoke3(target, a0, a1, a2);
+                    default -> invoker.invoke4(target, a0, a1, a2, a3);
+                };
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
             }
+        } finally {
+            event.invoked(type, name, cacheHit);
         }
-        return true;
     }
 
-    private static boolean isCompatible(Class<?> parameterType, Object arg) {
-        if (arg == null) {
-            return !parameterType.isPrimitive();
+    private static Object[] arguments(int count, Object a0, Object a1, Object a2, Object a3) {
+        return switch (count) {
+            case 0 -> new Object[0];
+            case 1 -> new Object[]{a0};
+            case 2 -> new Object[]{a0, a1};
+            case 3 -> new Object[]{a0, a1, a2};
+            default -> new Object[]{a0, a1, a2, a3};
+        };
+    }
+
+    private static Object invokeMethod(Method method, Class<?> type, Object target, Object[] args)
+            throws IllegalAccessException, InvocationTargetException {
+        InvocationEvent event = InvocationEvent.start();
+        boolean cacheHit = event.isEnabled() && generatedInvokers && Invokers.isCached(method);
+        try {
+            if (generatedInvokers) {
+                return invoke(method, target, args);
+            }
+            method.setAccessible(true);
+
+            return method.invoke(target, args);
+        } finally {
+            event.invoked(type, method.getName(), cacheHit);
         }
-        Class<?> argType = arg.getClass();
-        if (parameterType.isPrimitive()) {
-            parameterType = wrapPrimitive(parameterType);
+    }
+
+    private static Object invoke(Executable executable, Object target, Object[] args)
+            throws IllegalAccessException, InvocationTargetException {
+        Invokers.Invoker invoker = Invokers.of(executable);
+        try {
+            return invoker.invoke(target, args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
         }
-        return parameterType.isAssignableFrom(argType);
     }
 
-    private static Class<?> wrapPrimitive(Class<?> type) {
-        if (type == boolean.class) {
-            return Boolean.class;
+    private static ResolutionCache.Resolution getMethod(String name, Class<?> type, int count, Object a0, Object a1,
+                                                        Object a2, Object a3) {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.METHOD);
+        ResolutionCache.Resolution cached = ResolutionCache.find(type, name, count, a0, a1, a2, a3);
+        if (cached == null) {
+            return getMethod(name, arguments(count, a0, a1, a2, a3), type);
         }
-        if (type == byte.class) {
-            return Byte.class;
+        // Kept apart from cachedMethod so the event doesn't escape and the lookup doesn't allocate
+        if (cached.getMember() == null) {
+            Metrics.failedLookup(Operation.METHOD, type, name, start, true);
+            event.failed(type, name, true);
+            throw new IllegalArgumentException("Couldn't find method " + name);
         }
-        if (type == char.class) {
-            return Character.class;
+        Metrics.lookup(Operation.METHOD, type, name, start, true);
+        event.found(type, name, true);
+        return cached;
+    }
+
+    private static ResolutionCache.Resolution getMethod(String name, Object[] args, Class<?> type) {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.METHOD);
+        ResolutionCache.Resolution cached = ResolutionCache.find(type, name, args);
+        if (cached != null) {
+            return cachedMethod(cached, name, type, start, event);
+        }
+
+        DispatchTable.Candidate method;
+        try {
+            method = DispatchTable.methods(type, name).resolve(args);
+        } catch (IllegalArgumentException ambiguous) {
+            Metrics.failedLookup(Operation.METHOD, type, name, start, false);
+            event.failed(type, name, false);
+            throw ambiguous;
         }
-        if (type == short.class) {
-            return Short.class;
+        ResolutionCache.Resolution resolution = ResolutionCache.put(type, name, args, method);
+        if (method == null) {
+            Metrics.failedLookup(Operation.METHOD, type, name, start, false);
+            event.failed(type, name, false);
+            throw new IllegalArgumentException("Couldn't find method " + name);
+        }
+        Metrics.lookup(Operation.METHOD, type, name, start, false);
+        event.found(type, name, false);
+        return resolution;
+    }
+
+    private static ResolutionCache.Resolution cachedMethod(ResolutionCache.Resolution cached, String name,
+                                                           Class<?> type, long start, LookupEvent event) {
+        if (cached.getMember() == null) {
+            Metrics.failedLookup(Operation.METHOD, type, name, start, true);
+            event.failed(type, name, true);
+            throw new IllegalArgumentException("Couldn't find method " + name);
         }
-        if (type == int.class) {
-            return Integer.class;
+        Metrics.lookup(Operation.METHOD, type, name, start, true);
+        event.found(type, name, true);
+        return cached;
+    }
+
+    private static ResolutionCache.Resolution findConstructor(Class<?> clazz, int count, Object a0, Object a1,
+                                                              Object a2, Object a3) throws NoSuchMethodException {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.CONSTRUCTOR);
+        ResolutionCache.Resolution cached = ResolutionCache.find(clazz, ResolutionCache.CONSTRUCTOR, count, a0, a1, a2,
+                a3);
+        if (cached == null) {
+            return findConstructor(clazz, arguments(count, a0, a1, a2, a3));
         }
-        if (type == long.class) {
-            return Long.class;
+        if (cached.getMember() == null) {
+            Metrics.failedLookup(Operation.CONSTRUCTOR, clazz, null, start, true);
+            event.failed(clazz, null, true);
+            throw new NoSuchMethodException("Couldn't find constructor for " + clazz.getName());
         }
-        if (type == float.class) {
-            return Float.class;
+        Metrics.lookup(Operation.CONSTRUCTOR, clazz, null, start, true);
+        event.found(clazz, null, true);
+        return cached;
+    }
+
+    private static ResolutionCache.Resolution findConstructor(Class<?> clazz, Object[] args)
+            throws NoSuchMethodException {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.CONSTRUCTOR);
+        ResolutionCache.Resolution resolution = ResolutionCache.find(clazz, ResolutionCache.CONSTRUCTOR, args);
+        boolean cacheHit = resolution != null;
+        if (!cacheHit) {
+            DispatchTable.Candidate constructor;
+            try {
+                constructor = DispatchTable.constructors(clazz).resolve(args);
+            } catch (IllegalArgumentException ambiguous) {
+                Metrics.failedLookup(Operation.CONSTRUCTOR, clazz, null, start, false);
+                event.failed(clazz, null, false);
+                throw new NoSuchMethodException(ambiguous.getMessage());
+            }
+            resolution = ResolutionCache.put(clazz, ResolutionCache.CONSTRUCTOR, args, constructor);
         }
-        if (type == double.class) {
-            return Double.class;
+        if (resolution.getMember() == null) {
+            Metrics.failedLookup(Operation.CONSTRUCTOR, clazz, null, start, cacheHit);
+            event.failed(clazz, null, cacheHit);
+            throw new NoSuchMethodException("Couldn't find constructor for " + clazz.getName());
         }
-        return type;
+        Metrics.lookup(Operation.CONSTRUCTOR, clazz, null, start, cacheHit);
+        event.found(clazz, null, cacheHit);
+        return resolution;
     }
 }
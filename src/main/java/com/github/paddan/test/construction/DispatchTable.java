@@ -0,0 +1,372 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.construction;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The constructors of a class, or its methods with a given name, bucketed by number of parameters, built once per
+ * class and name. Calls are resolved against it the way the Java compiler resolves overloads, using the runtime
+ * classes of the arguments as their types: first without variable arity, where a boxed argument matches its primitive
+ * type exactly and can be widened like the primitive, then with variable arity. Of the applicable members, the most
+ * specific one is chosen, and a call with no most specific member is ambiguous.
+ * <p>
+ * Methods are collected from the class and its superclasses. Methods overridden further down the hierarchy and bridge
+ * methods are left out.
+ */
+final class DispatchTable {
+
+    private static final ClassValue<ConcurrentMap<String, DispatchTable>> TABLES = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<String, DispatchTable> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final Candidate[] NONE = new Candidate[0];
+
+    private final Candidate[][] byArity;
+    private final Candidate[] varArgs;
+
+    private DispatchTable(List<Candidate> candidates) {
+        int maxArity = 0;
+        for (Candidate candidate : candidates) {
+            maxArity = Math.max(maxArity, candidate.parameterTypes.length);
+        }
+        List<List<Candidate>> buckets = new ArrayList<>();
+        for (int i = 0; i <= maxArity; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        List<Candidate> varArgs = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            // A variable arity member also takes its last argument as an array, like a fixed arity member
+            buckets.get(candidate.parameterTypes.length).add(candidate);
+            if (candidate.varArgs) {
+                varArgs.add(candidate);
+            }
+        }
+        this.byArity = new Candidate[buckets.size()][];
+        for (int i = 0; i < byArity.length; i++) {
+            byArity[i] = buckets.get(i).toArray(NONE);
+        }
+        this.varArgs = varArgs.toArray(NONE);
+    }
+
+    /**
+     * @param type the class to resolve the methods in
+     * @param name the name of the methods
+     * @return the cached table of the methods with the name in the class and its superclasses
+     */
+    static DispatchTable methods(Class<?> type, String name) {
+        ConcurrentMap<String, DispatchTable> tables = TABLES.get(type);
+        DispatchTable table = tables.get(name);
+        if (table == null) {
+            DispatchTable built = new DispatchTable(collectMethods(type, name));
+            table = tables.putIfAbsent(name, built);
+            if (table == null) {
+                table = built;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @param type the class to resolve the constructors in
+     * @return the cached table of the constructors declared by the class
+     */
+    static DispatchTable constructors(Class<?> type) {
+        ConcurrentMap<String, DispatchTable> tables = TABLES.get(type);
+        DispatchTable table = tables.get(ResolutionCache.CONSTRUCTOR);
+        if (table == null) {
+            List<Candidate> candidates = new ArrayList<>();
+            for (Executable constructor : type.getDeclaredConstructors()) {
+                candidates.add(new Candidate(constructor));
+            }
+            DispatchTable built = new DispatchTable(candidates);
+            table = tables.putIfAbsent(ResolutionCache.CONSTRUCTOR, built);
+            if (table == null) {
+                table = built;
+            }
+        }
+        return table;
+    }
+
+    private static List<Candidate> collectMethods(Class<?> type, String name) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                if (!method.getName().equals(name) || method.isBridge()) {
+                    continue;
+                }
+                Candidate candidate = new Candidate(method);
+                if (!isOverridden(candidate, candidates)) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean isOverridden(Candidate candidate, List<Candidate> subclassCandidates) {
+        for (Candidate subclassCandidate : subclassCandidates) {
+            if (Arrays.equals(subclassCandidate.parameterTypes, candidate.parameterTypes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the most specific member applicable to the arguments.
+     *
+     * @param args the arguments of the call
+     * @return the most specific member or null if no member is applicable
+     * @throws IllegalArgumentException if more than one member is applicable and none of them is the most specific
+     */
+    Candidate resolve(Object[] args) {
+        if (args.length < byArity.length) {
+            Candidate found = mostSpecific(byArity[args.length], args, false);
+            if (found != null) {
+                return found;
+            }
+        }
+        return mostSpecific(varArgs, args, true);
+    }
+
+    private static Candidate mostSpecific(Candidate[] candidates, Object[] args, boolean varArgs) {
+        Candidate best = null;
+        for (Candidate candidate : candidates) {
+            if (candidate.isApplicable(args, varArgs)
+                    && (best == null || candidate.isMoreSpecificThan(best, args.length, varArgs))) {
+                best = candidate;
+            }
+        }
+        if (best != null) {
+            for (Candidate candidate : candidates) {
+                if (candidate != best && candidate.isApplicable(args, varArgs)
+                        && !best.isMoreSpecificThan(candidate, args.length, varArgs)) {
+                    throw new IllegalArgumentException("Ambiguous call to " + best.member.getName() + ", both "
+                            + best.member + " and " + candidate.member + " match");
+                }
+            }
+        }
+        return best;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static Class<?> unwrap(Class<?> type) {
+        return MethodType.methodType(type).unwrap().returnType();
+    }
+
+    /**
+     * Tells whether a value of one primitive type can be widened to another, or is of the same type.
+     */
+    private static boolean widens(Class<?> from, Class<?> to) {
+        if (from == to) {
+            return true;
+        }
+        if (from == byte.class) {
+            return to == short.class || to == int.class || to == long.class || to == float.class
+                    || to == double.class;
+        }
+        if (from == short.class || from == char.class) {
+            return to == int.class || to == long.class || to == float.class || to == double.class;
+        }
+        if (from == int.class) {
+            return to == long.class || to == float.class || to == double.class;
+        }
+        if (from == long.class) {
+            return to == float.class || to == double.class;
+        }
+        return from == float.class && to == double.class;
+    }
+
+    private static boolean isCompatible(Class<?> parameterType, Object arg) {
+        if (arg == null) {
+            return !parameterType.isPrimitive();
+        }
+        if (parameterType.isPrimitive()) {
+            Class<?> primitive = unwrap(arg.getClass());
+            return primitive.isPrimitive() && widens(primitive, parameterType);
+        }
+        return parameterType.isAssignableFrom(arg.getClass());
+    }
+
+    /**
+     * Tells whether a parameter type is at least as specific as another. A primitive type is more specific than the
+     * types its values widen or box to.
+     */
+    private static boolean isAsSpecific(Class<?> type, Class<?> other) {
+        if (type.isPrimitive()) {
+            return other.isPrimitive() ? widens(type, other) : other.isAssignableFrom(wrap(type));
+        }
+        return !other.isPrimitive() && other.isAssignableFrom(type);
+    }
+
+    private static Object widen(Object value, Class<?> type) {
+        if (value == null || !type.isPrimitive() || value.getClass() == wrap(type)) {
+            return value;
+        }
+        if (type == char.class || type == boolean.class) {
+            // Nothing widens to these, the value is already of the type
+            return value;
+        }
+        Number number = value instanceof Character character ? (int) character : (Number) value;
+        if (type == short.class) {
+            return number.shortValue();
+        }
+        if (type == int.class) {
+            return number.intValue();
+        }
+        if (type == long.class) {
+            return number.longValue();
+        }
+        if (type == float.class) {
+            return number.floatValue();
+        }
+        return number.doubleValue();
+    }
+
+    /**
+     * A constructor or method with its parameter types, which are read once since reading them copies the array.
+     */
+    static final class Candidate {
+        private final Executable member;
+        private final Class<?>[] parameterTypes;
+        private final boolean varArgs;
+
+        private Candidate(Executable member) {
+            this.member = member;
+            this.parameterTypes = member.getParameterTypes();
+            this.varArgs = member.isVarArgs();
+        }
+
+        Executable getMember() {
+            return member;
+        }
+
+        /**
+         * Tells whether the arguments must be converted by {@link #convert(Object[])} before the member is invoked
+         * with them, because a primitive argument is widened or the member is called with variable arity.
+         *
+         * @param args the arguments the member was resolved for
+         * @return true if the arguments must be converted
+         */
+        boolean needsConversion(Object[] args) {
+            if (args.length != parameterTypes.length || varArgs && !accepts(args)) {
+                return true;
+            }
+            for (int i = 0; i < args.length; i++) {
+                if (parameterTypes[i].isPrimitive() && args[i].getClass() != wrap(parameterTypes[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Converts the arguments the member was resolved for to the exact types of its parameters, widening
+         * primitives and collecting the trailing arguments of a variable arity call in an array.
+         *
+         * @param args the arguments the member was resolved for
+         * @return the converted arguments
+         */
+        Object[] convert(Object[] args) {
+            int count = parameterTypes.length;
+            Object[] converted = new Object[count];
+            boolean collect = varArgs && !accepts(args);
+            int fixed = collect ? count - 1 : count;
+            for (int i = 0; i < fixed; i++) {
+                converted[i] = widen(args[i], parameterTypes[i]);
+            }
+            if (collect) {
+                Class<?> componentType = parameterTypes[count - 1].getComponentType();
+                Object array = Array.newInstance(componentType, args.length - fixed);
+                for (int i = fixed; i < args.length; i++) {
+                    Array.set(array, i - fixed, widen(args[i], componentType));
+                }
+                converted[count - 1] = array;
+            }
+            return converted;
+        }
+
+        private boolean isApplicable(Object[] args, boolean expanded) {
+            return expanded ? acceptsVarArgs(args) : accepts(args);
+        }
+
+        private boolean accepts(Object[] args) {
+            if (args.length != parameterTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < args.length; i++) {
+                if (!isCompatible(parameterTypes[i], args[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean acceptsVarArgs(Object[] args) {
+            int fixed = parameterTypes.length - 1;
+            if (args.length < fixed) {
+                return false;
+            }
+            Class<?> componentType = parameterTypes[fixed].getComponentType();
+            for (int i = 0; i < args.length; i++) {
+                if (!isCompatible(i < fixed ? parameterTypes[i] : componentType, args[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Class<?> parameterType(int index, boolean expanded) {
+            int last = parameterTypes.length - 1;
+            return expanded && index >= last ? parameterTypes[last].getComponentType() : parameterTypes[index];
+        }
+
+        private boolean isMoreSpecificThan(Candidate other, int argumentCount, boolean expanded) {
+            int count = expanded
+                    ? Math.max(argumentCount, Math.max(parameterTypes.length, other.parameterTypes.length))
+                    : parameterTypes.length;
+            for (int i = 0; i < count; i++) {
+                if (!isAsSpecific(parameterType(i, expanded), other.parameterType(i, expanded))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
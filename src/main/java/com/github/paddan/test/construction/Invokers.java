@@ -0,0 +1,457 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.construction;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Turns resolved constructors and methods into generated invokers. Members with up to five parameters (the receiver of
+ * an instance method included) get an implementation of one of the functional interfaces below, spun by the
+ * {@link LambdaMetafactory} as a nestmate of the declaring class. Anything else falls back to a spreading method handle.
+ * <p>
+ * Invokers are cached per member.
+ */
+final class Invokers {
+
+    private static final int MAX_GENERATED_ARITY = 5;
+
+    private static final Class<?>[] FUNCTIONS = {
+            Fn0.class, Fn1.class, Fn2.class, Fn3.class, Fn4.class, Fn5.class
+    };
+
+    private static final Class<?>[] VOID_FUNCTIONS = {
+            VoidFn0.class, VoidFn1.class, VoidFn2.class, VoidFn3.class, VoidFn4.class, VoidFn5.class
+    };
+
+    private static final ClassValue<ConcurrentMap<Executable, Invoker>> INVOKERS = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<Executable, Invoker> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private Invokers() {
+    }
+
+    /**
+     * Returns the cached invoker for the given constructor or method, generating it on first use.
+     *
+     * @param executable the constructor or method to invoke
+     * @return an invoker for the constructor or method
+     * @throws IllegalAccessException if the declaring class cannot be accessed
+     */
+    static Invoker of(Executable executable) throws IllegalAccessException {
+        ConcurrentMap<Executable, Invoker> invokers = INVOKERS.get(executable.getDeclaringClass());
+        Invoker invoker = invokers.get(executable);
+        if (invoker == null) {
+            Invoker compiled = compile(executable);
+            invoker = invokers.putIfAbsent(executable, compiled);
+            if (invoker == null) {
+                invoker = compiled;
+            }
+        }
+        return invoker;
+    }
+
+    /**
+     * @param executable the constructor or method to check
+     * @return true if the invoker for the constructor or method has already been generated
+     */
+    static boolean isCached(Executable executable) {
+        return INVOKERS.get(executable.getDeclaringClass()).containsKey(executable);
+    }
+
+    private static Invoker compile(Executable executable) throws IllegalAccessException {
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(executable.getDeclaringClass(), MethodHandles.lookup());
+        } catch (IllegalAccessException notOpen) {
+            // The package isn't open to us, only members made accessible through reflection can be called
+            executable.setAccessible(true);
+            lookup = null;
+        }
+        MethodHandles.Lookup unreflecting = lookup == null ? MethodHandles.lookup() : lookup;
+        MethodHandle handle = executable instanceof Method method
+                ? unreflecting.unreflect(method)
+                : unreflecting.unreflectConstructor((Constructor<?>) executable);
+        handle = handle.asFixedArity();
+        boolean instance = executable instanceof Method && !Modifier.isStatic(executable.getModifiers());
+
+        if (lookup != null && handle.type().parameterCount() <= MAX_GENERATED_ARITY) {
+            try {
+                return generate(lookup, handle, instance);
+            } catch (Throwable notGenerated) {
+                // The declaring class can't see the functional interfaces or can't host a lambda, use the handle
+            }
+        }
+        return new SpreadInvoker(handle, instance);
+    }
+
+    private static Invoker generate(MethodHandles.Lookup lookup, MethodHandle handle, boolean instance)
+            throws Throwable {
+        MethodType type = handle.type();
+        int arity = type.parameterCount();
+        boolean isVoid = type.returnType() == void.class;
+
+        MethodType erased = MethodType.genericMethodType(arity);
+        MethodType instantiated = type.wrap();
+        if (isVoid) {
+            erased = erased.changeReturnType(void.class);
+            instantiated = instantiated.changeReturnType(void.class);
+        }
+        Class<?> function = isVoid ? VOID_FUNCTIONS[arity] : FUNCTIONS[arity];
+
+        CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(function), erased,
+                handle, instantiated);
+        Object fn = site.getTarget().invoke();
+
+        return switch (arity) {
+            case 0 -> new Invoker0(fn);
+            case 1 -> new Invoker1(fn, instance);
+            case 2 -> new Invoker2(fn, instance);
+            case 3 -> new Invoker3(fn, instance);
+            case 4 -> new Invoker4(fn, instance);
+            default -> new Invoker5(fn, instance);
+        };
+    }
+
+    /**
+     * Invokes a constructor or method. The target is ignored for constructors and static methods.
+     * <p>
+     * The fixed arity variants take the arguments without an array. Generated invokers override the variant matching
+     * the number of parameters of their member, the other variants put the arguments in an array and call
+     * {@link #invoke(Object, Object[])}.
+     */
+    abstract static class Invoker {
+        private static final Object[] NO_ARGS = new Object[0];
+
+        abstract Object invoke(Object target, Object[] args) throws Throwable;
+
+        Object invoke0(Object target) throws Throwable {
+            return invoke(target, NO_ARGS);
+        }
+
+        Object invoke1(Object target, Object a0) throws Throwable {
+            return invoke(target, new Object[]{a0});
+        }
+
+        Object invoke2(Object target, Object a0, Object a1) throws Throwable {
+            return invoke(target, new Object[]{a0, a1});
+        }
+
+        Object invoke3(Object target, Object a0, Object a1, Object a2) throws Throwable {
+            return invoke(target, new Object[]{a0, a1, a2});
+        }
+
+        Object invoke4(Object target, Object a0, Object a1, Object a2, Object a3) throws Throwable {
+            return invoke(target, new Object[]{a0, a1, a2, a3});
+        }
+    }
+
+    private static final class SpreadInvoker extends Invoker {
+        private final MethodHandle handle;
+
+        private SpreadInvoker(MethodHandle handle, boolean instance) {
+            int arity = handle.type().parameterCount();
+            if (instance) {
+                handle = handle.asSpreader(Object[].class, arity - 1);
+            } else {
+                handle = MethodHandles.dropArguments(handle.asSpreader(Object[].class, arity), 0, Object.class);
+            }
+            this.handle = handle.asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        }
+
+        @Override
+        Object invoke(Object target, Object[] args) throws Throwable {
+            return (Object) handle.invokeExact(target, args);
+        }
+    }
+
+    private static final class Invoker0 extends Invoker {
+        private final Fn0 fn;
+        private final VoidFn0 voidFn;
+
+        private Invoker0(Object fn) {
+            this.fn = fn instanceof Fn0 f ? f : null;
+            this.voidFn = fn instanceof VoidFn0 f ? f : null;
+        }
+
+        @Override
+        Object invoke(Object target, Object[] args) {
+            return invoke0(target);
+        }
+
+        @Override
+        Object invoke0(Object target) {
+            if (fn != null) {
+                return fn.apply();
+            }
+            voidFn.apply();
+            return null;
+        }
+    }
+
+    private static final class Invoker1 extends Invoker {
+        private final Fn1 fn;
+        private final VoidFn1 voidFn;
+        private final boolean instance;
+
+        private Invoker1(Object fn, boolean instance) {
+            this.fn = fn instanceof Fn1 f ? f : null;
+            this.voidFn = fn instanceof VoidFn1 f ? f : null;
+            this.instance = instance;
+        }
+
+        @Override
+        Object invoke(Object target, Object[] args) {
+            return call(instance ? target : args[0]);
+        }
+
+        @Override
+        Object invoke0(Object target) throws Throwable {
+            return instance ? call(target) : super.invoke0(target);
+        }
+
+        @Override
+        Object invoke1(Object target, Object a0) throws Throwable {
+            return instance ? super.invoke1(target, a0) : call(a0);
+        }
+
+        private Object call(Object a0) {
+            if (fn != null) {
+                return fn.apply(a0);
+            }
+            voidFn.apply(a0);
+            return null;
+        }
+    }
+
+    private static final class Invoker2 extends Invoker {
+        private final Fn2 fn;
+        private final VoidFn2 voidFn;
+        private final boolean instance;
+
+        private Invoker2(Object fn, boolean instance) {
+            this.fn = fn instanceof Fn2 f ? f : null;
+            this.voidFn = fn instanceof VoidFn2 f ? f : null;
+            this.instance = instance;
+        }
+
+        @Override
+        Object invoke(Object target, Object[] args) {
+            return instance ? call(target, args[0]) : call(args[0], args[1]);
+        }
+
+        @Override
+        Object invoke1(Object target, Object a0) throws Throwable {
+            return instance ? call(target, a0) : super.invoke1(target, a0);
+        }
+
+        @Override
+        Object invoke2(Object target, Object a0, Object a1) throws Throwable {
+            return instance ? super.invoke2(target, a0, a1) : call(a0, a1);
+        }
+
+        private Object call(Object a0, Object a1) {
+            if (fn != null) {
+                return fn.apply(a0, a1);
+            }
+            voidFn.apply(a0, a1);
+            return null;
+        }
+    }
+
+    private static final class Invoker3 extends Invoker {
+        private final Fn3 fn;
+        private final VoidFn3 voidFn;
+        private final boolean instance;
+
+        private Invoker3(Object fn, boolean instance) {
+            this.fn = fn instanceof Fn3 f ? f : null;
+            this.voidFn = fn instanceof VoidFn3 f ? f : null;
+            this.instance = instance;
+        }
+
+        @Override
+        Object invoke(Object target, Object[] args) {
+            return instance ? call(target, args[0], args[1]) : call(args[0], args[1], args[2]);
+        }
+
+        @Override
+        Object invoke2(Object target, Object a0, Object a1) throws Throwable {
+            return instance ? call(target, a0, a1) : super.invoke2(target, a0, a1);
+        }
+
+        @Override
+        Object invoke3(Object target, Object a0, Object a1, Object a2) throws Throwable {
+            return instance ? super.invoke3(target, a0, a1, a2) : call(a0, a1, a2);
+        }
+
+        private Object call(Object a0, Object a1, Object a2) {
+            if (fn != null) {
+                return fn.apply(a0, a1, a2);
+            }
+            voidFn.apply(a0, a1, a2);
+            return null;
+        }
+    }
+
+    private static final class Invoker4 extends Invoker {
+        private final Fn4 fn;
+        private final VoidFn4 voidFn;
+        private final boolean instance;
+
+        private Invoker4(Object fn, boolean instance) {
+            this.fn = fn instanceof Fn4 f ? f : null;
+            this.voidFn = fn instanceof VoidFn4 f ? f : null;
+            this.instance = instance;
+        }
+
+        @Override
+        Object invoke(Object target, Object[] args) {
+            return instance ? call(target, args[0], args[1], args[2]) : call(args[0], args[1], args[2], args[3]);
+        }
+
+        @Override
+        Object invoke3(Object target, Object a0, Object a1, Object a2) throws Throwable {
+            return instance ? call(target, a0, a1, a2) : super.invoke3(target, a0, a1, a2);
+        }
+
+        @Override
+        Object invoke4(Object target, Object a0, Object a1, Object a2, Object a3) throws Throwable {
+            return instance ? super.invoke4(target, a0, a1, a2, a3) : call(a0, a1, a2, a3);
+        }
+
+        private Object call(Object a0, Object a1, Object a2, Object a3) {
+            if (fn != null) {
+                return fn.apply(a0, a1, a2, a3);
+            }
+            voidFn.apply(a0, a1, a2, a3);
+            return null;
+        }
+    }
+
+    private static final class Invoker5 extends Invoker {
+        private final Fn5 fn;
+        private final VoidFn5 voidFn;
+        private final boolean instance;
+
+        private Invoker5(Object fn, boolean instance) {
+            this.fn = fn instanceof Fn5 f ? f : null;
+            this.voidFn = fn instanceof VoidFn5 f ? f : null;
+            this.instance = instance;
+        }
+
+        @Override
+        Object invoke(Object target, Object[] args) {
+            return instance
+                    ? call(target, args[0], args[1], args[2], args[3])
+                    : call(args[0], args[1], args[2], args[3], args[4]);
+        }
+
+        @Override
+        Object invoke4(Object target, Object a0, Object a1, Object a2, Object a3) throws Throwable {
+            return instance ? call(target, a0, a1, a2, a3) : super.invoke4(target, a0, a1, a2, a3);
+        }
+
+        private Object call(Object a0, Object a1, Object a2, Object a3, Object a4) {
+            if (fn != null) {
+                return fn.apply(a0, a1, a2, a3, a4);
+            }
+            voidFn.apply(a0, a1, a2, a3, a4);
+            return null;
+        }
+    }
+
+    // The generated classes live in the package of the declaring class, so the interfaces they implement are public.
+
+    @FunctionalInterface
+    public interface Fn0 {
+        Object apply();
+    }
+
+    @FunctionalInterface
+    public interface Fn1 {
+        Object apply(Object a0);
+    }
+
+    @FunctionalInterface
+    public interface Fn2 {
+        Object apply(Object a0, Object a1);
+    }
+
+    @FunctionalInterface
+    public interface Fn3 {
+        Object apply(Object a0, Object a1, Object a2);
+    }
+
+    @FunctionalInterface
+    public interface Fn4 {
+        Object apply(Object a0, Object a1, Object a2, Object a3);
+    }
+
+    @FunctionalInterface
+    public interface Fn5 {
+        Object apply(Object a0, Object a1, Object a2, Object a3, Object a4);
+    }
+
+    @FunctionalInterface
+    public interface VoidFn0 {
+        void apply();
+    }
+
+    @FunctionalInterface
+    public interface VoidFn1 {
+        void apply(Object a0);
+    }
+
+    @FunctionalInterface
+    public interface VoidFn2 {
+        void apply(Object a0, Object a1);
+    }
+
+    @FunctionalInterface
+    public interface VoidFn3 {
+        void apply(Object a0, Object a1, Object a2);
+    }
+
+    @FunctionalInterface
+    public interface VoidFn4 {
+        void apply(Object a0, Object a1, Object a2, Object a3);
+    }
+
+    @FunctionalInterface
+    public interface VoidFn5 {
+        void apply(Object a0, Object a1, Object a2, Object a3, Object a4);
+    }
+}
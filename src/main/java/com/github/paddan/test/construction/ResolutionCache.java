@@ -0,0 +1,217 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.construction;
+
+import java.lang.reflect.Executable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the outcome of overload resolution per class, member name and runtime classes of the arguments. Failed
+ * lookups are cached as well, so repeating them doesn't scan the class again.
+ * <p>
+ * Each (class, name) pair has a small copy-on-write array of resolutions, which is searched by comparing the argument
+ * classes one by one, so a lookup doesn't allocate.
+ */
+final class ResolutionCache {
+
+    /**
+     * The name used for constructors.
+     */
+    static final String CONSTRUCTOR = "<init>";
+
+    private static final int MAX_RESOLUTIONS_PER_NAME = 64;
+
+    private static final ClassValue<ConcurrentMap<String, Resolution[]>> RESOLUTIONS = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<String, Resolution[]> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private ResolutionCache() {
+    }
+
+    /**
+     * Finds a cached resolution.
+     *
+     * @param type the class the member is looked up in
+     * @param name the name of the member
+     * @param args the arguments of the call
+     * @return the cached resolution or null if the call hasn't been resolved yet
+     */
+    static Resolution find(Class<?> type, String name, Object[] args) {
+        Resolution[] resolutions = RESOLUTIONS.get(type).get(name);
+        if (resolutions != null) {
+            for (Resolution resolution : resolutions) {
+                if (resolution.matches(args)) {
+                    HITS.increment();
+                    return resolution;
+                }
+            }
+        }
+        MISSES.increment();
+        return null;
+    }
+
+    /**
+     * Finds a cached resolution for a call with up to four arguments without putting them in an array. Only hits are
+     * counted, a miss is expected to be followed by {@link #find(Class, String, Object[])}, which counts it.
+     *
+     * @param type  the class the member is looked up in
+     * @param name  the name of the member
+     * @param count the number of arguments of the call
+     * @param a0    the first argument, ignored when the call has fewer arguments
+     * @param a1    the second argument, ignored when the call has fewer arguments
+     * @param a2    the third argument, ignored when the call has fewer arguments
+     * @param a3    the fourth argument, ignored when the call has fewer arguments
+     * @return the cached resolution or null if the call hasn't been resolved yet
+     */
+    static Resolution find(Class<?> type, String name, int count, Object a0, Object a1, Object a2, Object a3) {
+        Resolution[] resolutions = RESOLUTIONS.get(type).get(name);
+        if (resolutions != null) {
+            for (Resolution resolution : resolutions) {
+                if (resolution.matches(count, a0, a1, a2, a3)) {
+                    HITS.increment();
+                    return resolution;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Caches the outcome of a resolution.
+     *
+     * @param type   the class the member is looked up in
+     * @param name   the name of the member
+     * @param args   the arguments of the call
+     * @param member the resolved member or null if no member matched the arguments
+     * @return the resolution
+     */
+    static Resolution put(Class<?> type, String name, Object[] args, DispatchTable.Candidate member) {
+        Resolution resolution = new Resolution(argumentTypes(args), member,
+                member != null && member.needsConversion(args));
+        RESOLUTIONS.get(type).merge(name, new Resolution[]{resolution}, (cached, added) -> {
+            if (cached.length >= MAX_RESOLUTIONS_PER_NAME) {
+                return cached;
+            }
+            for (Resolution existing : cached) {
+                if (Arrays.equals(existing.argumentTypes, resolution.argumentTypes)) {
+                    return cached;
+                }
+            }
+            Resolution[] merged = Arrays.copyOf(cached, cached.length + 1);
+            merged[cached.length] = resolution;
+            return merged;
+        });
+        return resolution;
+    }
+
+    static long hits() {
+        return HITS.sum();
+    }
+
+    static long misses() {
+        return MISSES.sum();
+    }
+
+    static void resetStatistics() {
+        HITS.reset();
+        MISSES.reset();
+    }
+
+    private static Class<?>[] argumentTypes(Object[] args) {
+        Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            types[i] = args[i] == null ? null : args[i].getClass();
+        }
+        return types;
+    }
+
+    /**
+     * A cached resolution, the member is null for a failed lookup.
+     */
+    static final class Resolution {
+        private final Class<?>[] argumentTypes;
+        private final DispatchTable.Candidate member;
+        private final boolean conversion;
+
+        private Resolution(Class<?>[] argumentTypes, DispatchTable.Candidate member, boolean conversion) {
+            this.argumentTypes = argumentTypes;
+            this.member = member;
+            this.conversion = conversion;
+        }
+
+        Executable getMember() {
+            return member == null ? null : member.getMember();
+        }
+
+        /**
+         * @return true if the arguments must be converted by {@link #arguments(Object[])} before the member is
+         * invoked, because primitives are widened or the call has variable arity
+         */
+        boolean needsConversion() {
+            return conversion;
+        }
+
+        /**
+         * @param args the arguments of the call
+         * @return the arguments to invoke the member with, which are the given arguments unless they need conversion
+         */
+        Object[] arguments(Object[] args) {
+            return conversion ? member.convert(args) : args;
+        }
+
+        private boolean matches(int count, Object a0, Object a1, Object a2, Object a3) {
+            Class<?>[] types = argumentTypes;
+            return types.length == count
+                    && (count < 1 || typeOf(a0) == types[0])
+                    && (count < 2 || typeOf(a1) == types[1])
+                    && (count < 3 || typeOf(a2) == types[2])
+                    && (count < 4 || typeOf(a3) == types[3]);
+        }
+
+        private static Class<?> typeOf(Object arg) {
+            return arg == null ? null : arg.getClass();
+        }
+
+        private boolean matches(Object[] args) {
+            if (args.length != argumentTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < args.length; i++) {
+                Object arg = args[i];
+                if ((arg == null ? null : arg.getClass()) != argumentTypes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.generation;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@link GeneratedAccess} for every class named by {@link GenerateAccess}, and registers the generated
+ * classes as services of {@link GeneratedAccess} in {@code META-INF/services}.
+ * <p>
+ * A generated class handles the members the target declares that aren't private, with the same rules as reflection:
+ * an unqualified field name refers to the field declared by the target, and methods and constructors are matched by
+ * name and by arguments that are null or instances of the parameter types, where primitive parameters take their
+ * wrappers. Final fields are read only. A method or constructor is only handled if no other one of the same name,
+ * private and inherited ones included, takes as many parameters, since reflection resolves the most specific of those
+ * at run time. Reflection then picks the same member whenever the generated code accepts the arguments.
+ */
+@SupportedAnnotationTypes(GenerateAccessProcessor.ANNOTATION)
+public final class GenerateAccessProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "com.github.paddan.test.generation.GenerateAccess";
+
+    private static final String SERVICES = "META-INF/services/" + GeneratedAccess.class.getName();
+
+    private final Set<String> targets = new HashSet<>();
+    private final Set<String> generated = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        if (annotation != null) {
+            for (Element annotated : round.getElementsAnnotatedWith(annotation)) {
+                for (TypeElement target : targetsOf(annotated, annotation)) {
+                    if (targets.add(target.getQualifiedName().toString())) {
+                        generate(target, annotated);
+                    }
+                }
+            }
+        }
+        if (round.processingOver() && !generated.isEmpty()) {
+            writeServices();
+        }
+        return true;
+    }
+
+    private List<TypeElement> targetsOf(Element annotated, TypeElement annotation) {
+        List<TypeElement> found = new ArrayList<>();
+        for (AnnotationMirror mirror : annotated.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(annotation)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    @SuppressWarnings("unchecked")
+                    List<? extends AnnotationValue> values = (List<? extends AnnotationValue>) entry.getValue().getValue();
+                    for (AnnotationValue value : values) {
+                        if (value.getValue() instanceof DeclaredType type) {
+                            found.add((TypeElement) type.asElement());
+                        }
+                    }
+                }
+            }
+        }
+        if (found.isEmpty() && annotated instanceof TypeElement type) {
+            found.add(type);
+        }
+        return found;
+    }
+
+    private void generate(TypeElement target, Element origin) {
+        Messager messager = processingEnv.getMessager();
+        if (!isAccessible(target)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Can't generate access for " + target.getQualifiedName()
+                    + ", it must be a class that isn't private, local or anonymous", origin);
+            return;
+        }
+
+        String binaryName = processingEnv.getElementUtils().getBinaryName(target).toString();
+        String generatedName = GeneratedAccessors.generatedName(binaryName);
+        int lastDot = generatedName.lastIndexOf('.');
+        String packageName = lastDot < 0 ? null : generatedName.substring(0, lastDot);
+        String simpleName = generatedName.substring(lastDot + 1);
+
+        String source = new Generator(target, packageName, simpleName).generate();
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(generatedName, target, origin);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source);
+            }
+            generated.add(generatedName);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Couldn't write " + generatedName + ": " + e, origin);
+        }
+    }
+
+    private static boolean isAccessible(TypeElement target) {
+        if (target.getKind() != ElementKind.CLASS && target.getKind() != ElementKind.ENUM
+                && target.getKind() != ElementKind.RECORD) {
+            return false;
+        }
+        Element element = target;
+        while (element instanceof TypeElement type) {
+            if (type.getModifiers().contains(Modifier.PRIVATE)
+                    || (type.getNestingKind() != NestingKind.TOP_LEVEL && type.getNestingKind() != NestingKind.MEMBER)) {
+                return false;
+            }
+            element = type.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private void writeServices() {
+        Filer filer = processingEnv.getFiler();
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+            try (Writer writer = file.openWriter()) {
+                for (String name : generated) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Couldn't write " + SERVICES + ": " + e);
+        }
+    }
+
+    private final class Generator {
+        private final TypeElement target;
+        private final String packageName;
+        private final String simpleName;
+        private final String type;
+        private final StringBuilder out = new StringBuilder();
+
+        private Generator(TypeElement target, String packageName, String simpleName) {
+            this.target = target;
+            this.packageName = packageName;
+            this.simpleName = simpleName;
+            this.type = erasure(target.asType());
+        }
+
+        private String generate() {
+            List<VariableElement> fields = new ArrayList<>();
+            for (VariableElement field : ElementFilter.fieldsIn(target.getEnclosedElements())) {
+                if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+                    fields.add(field);
+                }
+            }
+
+            if (packageName != null) {
+                out.append("package ").append(packageName).append(";\n\n");
+            }
+            out.append("@javax.annotation.processing.Generated(\"").append(GenerateAccessProcessor.class.getName())
+                    .append("\")\n");
+            out.append("@SuppressWarnings({\"rawtypes\", \"unchecked\", \"cast\", \"deprecation\", \"removal\"})\n");
+            out.append("public final class ").append(simpleName).append(" implements ")
+                    .append(GeneratedAccess.class.getName()).append(" {\n\n");
+
+            out.append("    @Override\n    public Class<?> getTargetClass() {\n        return ").append(type)
+                    .append(".class;\n    }\n\n");
+
+            out.append("    @Override\n    public Object get(Object target, String name) {\n");
+            out.append("        switch (name) {\n");
+            for (VariableElement field : fields) {
+                out.append("            case \"").append(field.getSimpleName()).append("\":\n");
+                out.append("                return ").append(receiver(field)).append('.').append(field.getSimpleName())
+                        .append(";\n");
+            }
+            out.append("            default:\n                return UNHANDLED;\n        }\n    }\n\n");
+
+            setter("set", "Object target, String name, Object value", fields, false);
+            setter("setStatic", "String name, Object value", fields, true);
+
+            Map<String, List<ExecutableElement>> methods = methods();
+            invoker("invoke", "Object target, String name, Object[] args", methods, false);
+            invoker("invokeStatic", "String name, Object[] args", methods, true);
+
+            out.append("    @Override\n    public Object construct(Object[] args) throws Throwable {\n");
+            for (ExecutableElement constructor : constructors()) {
+                out.append("        if (").append(accepts(constructor)).append(") {\n");
+                out.append("            return new ").append(type).append('(').append(arguments(constructor))
+                        .append(");\n        }\n");
+            }
+            out.append("        return UNHANDLED;\n    }\n}\n");
+            return out.toString();
+        }
+
+        private void setter(String method, String parameters, List<VariableElement> fields, boolean onlyStatic) {
+            out.append("    @Override\n    public boolean ").append(method).append('(').append(parameters)
+                    .append(") {\n");
+            out.append("        switch (name) {\n");
+            for (VariableElement field : fields) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.FINAL) || (onlyStatic && !modifiers.contains(Modifier.STATIC))) {
+                    continue;
+                }
+                out.append("            case \"").append(field.getSimpleName()).append("\":\n");
+                out.append("                if (").append(accepts(field.asType(), "value")).append(") {\n");
+                out.append("                    ").append(receiver(field)).append('.').append(field.getSimpleName())
+                        .append(" = ").append(cast(field.asType(), "value")).append(";\n");
+                out.append("                    return true;\n                }\n                return false;\n");
+            }
+            out.append("            default:\n                return false;\n        }\n    }\n\n");
+        }
+
+        private void invoker(String method, String parameters, Map<String, List<ExecutableElement>> methods,
+                             boolean onlyStatic) {
+            out.append("    @Override\n    public Object ").append(method).append('(').append(parameters)
+                    .append(") throws Throwable {\n");
+            out.append("        switch (name) {\n");
+            for (Map.Entry<String, List<ExecutableElement>> entry : methods.entrySet()) {
+                List<ExecutableElement> overloads = entry.getValue();
+                if (onlyStatic) {
+                    // Reflection fails on an instance method without a target, which is left to it
+                    overloads = overloads.stream().filter(m -> m.getModifiers().contains(Modifier.STATIC)).toList();
+                    if (overloads.isEmpty()) {
+                        continue;
+                    }
+                }
+                out.append("            case \"").append(entry.getKey()).append("\":\n");
+                for (ExecutableElement overload : overloads) {
+                    String call = receiver(overload) + '.' + overload.getSimpleName() + '(' + arguments(overload) + ')';
+                    out.append("                if (").append(accepts(overload)).append(") {\n");
+                    if (overload.getReturnType().getKind() == TypeKind.VOID) {
+                        out.append("                    ").append(call).append(";\n");
+                        out.append("                    return null;\n");
+                    } else {
+                        out.append("                    return ").append(call).append(";\n");
+                    }
+                    out.append("                }\n");
+                }
+                out.append("                return UNHANDLED;\n");
+            }
+            out.append("            default:\n                return UNHANDLED;\n        }\n    }\n\n");
+        }
+
+        private Map<String, List<ExecutableElement>> methods() {
+            // Collected like reflection does, up the superclasses and leaving out the methods that are overridden
+            Map<String, List<ExecutableElement>> candidates = new LinkedHashMap<>();
+            for (TypeElement current = target; current != null; current = superclass(current)) {
+                for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                    List<ExecutableElement> named = candidates.computeIfAbsent(method.getSimpleName().toString(),
+                            n -> new ArrayList<>());
+                    if (named.stream().noneMatch(candidate -> sameParameters(candidate, method))) {
+                        named.add(method);
+                    }
+                }
+            }
+
+            Map<String, List<ExecutableElement>> methods = new LinkedHashMap<>();
+            for (ExecutableElement method : ElementFilter.methodsIn(target.getEnclosedElements())) {
+                String name = method.getSimpleName().toString();
+                if (!method.getModifiers().contains(Modifier.PRIVATE)
+                        && hasUniqueArity(method, candidates.get(name))) {
+                    methods.computeIfAbsent(name, n -> new ArrayList<>()).add(method);
+                }
+            }
+            return methods;
+        }
+
+        private List<ExecutableElement> constructors() {
+            if (target.getKind() != ElementKind.CLASS || target.getModifiers().contains(Modifier.ABSTRACT)
+                    || (target.getNestingKind() == NestingKind.MEMBER
+                    && !target.getModifiers().contains(Modifier.STATIC))) {
+                return List.of();
+            }
+            List<ExecutableElement> all = ElementFilter.constructorsIn(target.getEnclosedElements());
+            List<ExecutableElement> constructors = new ArrayList<>();
+            for (ExecutableElement constructor : all) {
+                if (!constructor.getModifiers().contains(Modifier.PRIVATE) && hasUniqueArity(constructor, all)) {
+                    constructors.add(constructor);
+                }
+            }
+            return constructors;
+        }
+
+        private TypeElement superclass(TypeElement type) {
+            TypeMirror superclass = type.getSuperclass();
+            return superclass instanceof DeclaredType declared ? (TypeElement) declared.asElement() : null;
+        }
+
+        private boolean sameParameters(ExecutableElement first, ExecutableElement second) {
+            List<? extends VariableElement> parameters = first.getParameters();
+            List<? extends VariableElement> others = second.getParameters();
+            if (parameters.size() != others.size()) {
+                return false;
+            }
+            for (int i = 0; i < parameters.size(); i++) {
+                if (!processingEnv.getTypeUtils().isSameType(
+                        processingEnv.getTypeUtils().erasure(parameters.get(i).asType()),
+                        processingEnv.getTypeUtils().erasure(others.get(i).asType()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Reflection resolves among the members taking as many parameters as there are arguments, so a member that's
+         * the only one of its arity is the one it picks whenever the generated code accepts the arguments.
+         */
+        private boolean hasUniqueArity(ExecutableElement member, List<ExecutableElement> candidates) {
+            int arity = member.getParameters().size();
+            return candidates.stream().filter(candidate -> candidate.getParameters().size() == arity).count() == 1;
+        }
+
+        private String receiver(Element member) {
+            return member.getModifiers().contains(Modifier.STATIC) ? type : "((" + type + ") target)";
+        }
+
+        private String accepts(ExecutableElement executable) {
+            List<? extends VariableElement> parameters = executable.getParameters();
+            StringBuilder condition = new StringBuilder("args.length == ").append(parameters.size());
+            for (int i = 0; i < parameters.size(); i++) {
+                condition.append(" && ").append(accepts(parameters.get(i).asType(), "args[" + i + "]"));
+            }
+            return condition.toString();
+        }
+
+        private String arguments(ExecutableElement executable) {
+            List<? extends VariableElement> parameters = executable.getParameters();
+            StringBuilder arguments = new StringBuilder();
+            for (int i = 0; i < parameters.size(); i++) {
+                if (i > 0) {
+                    arguments.append(", ");
+                }
+                arguments.append(cast(parameters.get(i).asType(), "args[" + i + "]"));
+            }
+            return arguments.toString();
+        }
+
+        private String accepts(TypeMirror parameter, String value) {
+            if (parameter.getKind().isPrimitive()) {
+                return value + " instanceof " + wrapper(parameter);
+            }
+            return "(" + value + " == null || " + value + " instanceof " + erasure(parameter) + ")";
+        }
+
+        private String cast(TypeMirror parameter, String value) {
+            if (parameter.getKind().isPrimitive()) {
+                // Casting to the primitive keeps overloads taking the wrapper from being picked instead
+                return "(" + parameter + ") (" + wrapper(parameter) + ") " + value;
+            }
+            return "(" + erasure(parameter) + ") " + value;
+        }
+
+        private String wrapper(TypeMirror primitive) {
+            return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(
+                    primitive.getKind())).getQualifiedName().toString();
+        }
+
+        private String erasure(TypeMirror type) {
+            TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+            if (erased instanceof DeclaredType declared) {
+                return ((TypeElement) declared.asElement()).getQualifiedName().toString();
+            }
+            if (erased.getKind() == TypeKind.ARRAY) {
+                return erasure(((ArrayType) erased).getComponentType()) + "[]";
+            }
+            return erased.toString();
+        }
+    }
+}
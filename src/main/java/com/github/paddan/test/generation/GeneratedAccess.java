@@ -0,0 +1,114 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.generation;
+
+/**
+ * Reflection free access to the members of one class, generated by {@link GenerateAccessProcessor}. The generated
+ * code reaches the fields, methods and constructors the target declares that aren't private. Everything else, and any
+ * argument that doesn't fit, is reported as unhandled so the caller can fall back to reflection with the same
+ * semantics.
+ * <p>
+ * {@link com.github.paddan.test.access.Accessor}, {@link com.github.paddan.test.injection.Injector} and
+ * {@link com.github.paddan.test.construction.Caller} use a generated access automatically when one exists for the
+ * class they work on, see {@link GeneratedAccessors}.
+ */
+public interface GeneratedAccess {
+
+    /**
+     * Returned by the methods of a generated access for anything it doesn't handle.
+     */
+    Object UNHANDLED = new Object() {
+        @Override
+        public String toString() {
+            return "UNHANDLED";
+        }
+    };
+
+    /**
+     * @return the class this access was generated for
+     */
+    Class<?> getTargetClass();
+
+    /**
+     * Reads a field.
+     *
+     * @param target the object to read the field from, ignored for static fields
+     * @param name   the name of the field
+     * @return the value of the field, or {@link #UNHANDLED}
+     */
+    Object get(Object target, String name);
+
+    /**
+     * Writes a field that isn't final.
+     *
+     * @param target the object to write the field in, ignored for static fields
+     * @param name   the name of the field
+     * @param value  the value to write
+     * @return true if the value was written, false if the field isn't handled or doesn't accept the value
+     */
+    boolean set(Object target, String name, Object value);
+
+    /**
+     * Writes a static field that isn't final.
+     *
+     * @param name  the name of the field
+     * @param value the value to write
+     * @return true if the value was written, false if the field isn't handled or doesn't accept the value
+     */
+    boolean setStatic(String name, Object value);
+
+    /**
+     * Invokes the method with the given name that takes as many parameters as there are arguments and accepts them.
+     * Methods that share their name and number of parameters with another method, inherited ones included, aren't
+     * handled, as reflection picks the most specific of them for the arguments.
+     *
+     * @param target the object to invoke the method on, ignored for static methods
+     * @param name   the name of the method
+     * @param args   the arguments
+     * @return the result of the method, null for void methods, or {@link #UNHANDLED}
+     * @throws Throwable anything thrown by the method
+     */
+    Object invoke(Object target, String name, Object[] args) throws Throwable;
+
+    /**
+     * Invokes the static method with the given name that takes as many parameters as there are arguments and accepts
+     * them, handled like {@link #invoke(Object, String, Object[])}.
+     *
+     * @param name the name of the method
+     * @param args the arguments
+     * @return the result of the method, null for void methods, or {@link #UNHANDLED}
+     * @throws Throwable anything thrown by the method
+     */
+    Object invokeStatic(String name, Object[] args) throws Throwable;
+
+    /**
+     * Invokes the constructor that takes as many parameters as there are arguments and accepts them. Constructors that
+     * take as many parameters as another constructor aren't handled.
+     *
+     * @param args the arguments
+     * @return the new instance, or {@link #UNHANDLED}
+     * @throws Throwable anything thrown by the constructor
+     */
+    Object construct(Object[] args) throws Throwable;
+}
@@ -0,0 +1,89 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.generation;
+
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Finds the {@link GeneratedAccess} of a class. Generated classes are registered as services of
+ * {@link GeneratedAccess} by the processor and are named after their target, which is how the registry tells them
+ * apart without instantiating all of them. The result, generated access or not, is cached per class in a
+ * {@link ClassValue}.
+ */
+public final class GeneratedAccessors {
+
+    private static final String SUFFIX = "_GeneratedAccess";
+
+    private static final ClassValue<GeneratedAccess> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected GeneratedAccess computeValue(Class<?> type) {
+            return load(type);
+        }
+    };
+
+    private GeneratedAccessors() {
+    }
+
+    /**
+     * @param type the class to find the generated access for
+     * @return the generated access of the class, or null if none was generated
+     */
+    public static GeneratedAccess of(Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+
+    /**
+     * Returns the binary name of the class generated for a target, in the package of the target. Nested classes are
+     * flattened, so the generated class for {@code com.example.Outer$Inner} is
+     * {@code com.example.Outer_Inner_GeneratedAccess}.
+     *
+     * @param binaryName the binary name of the target class
+     * @return the binary name of the generated class
+     */
+    public static String generatedName(String binaryName) {
+        return binaryName.replace('$', '_') + SUFFIX;
+    }
+
+    private static GeneratedAccess load(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.isHidden()) {
+            return null;
+        }
+        String name = generatedName(type.getName());
+        ClassLoader loader = type.getClassLoader();
+        try {
+            // Providers are only instantiated when asked for, so only the one generated for the class is created
+            for (ServiceLoader.Provider<GeneratedAccess> provider
+                    : ServiceLoader.load(GeneratedAccess.class, loader).stream().toList()) {
+                if (provider.type().getName().equals(name)) {
+                    GeneratedAccess access = provider.get();
+                    return access.getTargetClass() == type ? access : null;
+                }
+            }
+        } catch (ServiceConfigurationError broken) {
+            // A provider that can't be loaded means reflection is used instead
+        }
+        return null;
+    }
+}
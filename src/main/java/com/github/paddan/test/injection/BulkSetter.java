@@ -0,0 +1,452 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.injection;
+
+import com.github.paddan.test.utils.FieldHandle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes a fixed set of fields in one go. For each class that declares some of the fields, a hidden class is defined
+ * as a nestmate of the declaring class, with a single static method that writes all of its fields in straight-line
+ * code: one cast and one {@code putfield} or {@code putstatic} per field. The JIT can compile the wiring of a whole
+ * fixture as one unit that way, instead of one dynamic call per field.
+ * <p>
+ * Final fields, fields with types the declaring class can't name and classes that can't be looked up privately are
+ * written through {@link FieldHandle} instead. Setters are cached per target class and field set.
+ */
+final class BulkSetter {
+
+    // Bounds the field sets remembered per class, autoInject can skip a different set of fields each time
+    private static final int MAX_CACHED_SETS = 64;
+
+    private static final MethodType SET_TYPE = MethodType.methodType(void.class, Object.class, Object[].class);
+
+    private static final ClassValue<ConcurrentMap<List<Field>, BulkSetter>> SETTERS = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<List<Field>, BulkSetter> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Field[] fields;
+    private final MethodHandle[] generated;
+    private final int[] handled;
+    private final FieldHandle[] remaining;
+    private final int[] remainingIndexes;
+
+    private BulkSetter(Field[] fields, MethodHandle[] generated, int[] handled, FieldHandle[] remaining,
+                       int[] remainingIndexes) {
+        this.fields = fields;
+        this.generated = generated;
+        this.handled = handled;
+        this.remaining = remaining;
+        this.remainingIndexes = remainingIndexes;
+    }
+
+    /**
+     * Returns the cached setter for the given fields of a class, generating it on first use.
+     *
+     * @param target the class of the objects the fields are written in
+     * @param fields the fields to write, in the order of the values given to {@link #apply(Object, Object[])}
+     * @return a setter for the fields
+     * @throws IllegalAccessException if a field that can't be generated can't be accessed either
+     */
+    static BulkSetter of(Class<?> target, List<Field> fields) throws IllegalAccessException {
+        ConcurrentMap<List<Field>, BulkSetter> setters = SETTERS.get(target);
+        BulkSetter setter = setters.get(fields);
+        if (setter == null) {
+            List<Field> key = List.copyOf(fields);
+            BulkSetter compiled = compile(key);
+            if (setters.size() >= MAX_CACHED_SETS) {
+                return compiled;
+            }
+            setter = setters.putIfAbsent(key, compiled);
+            if (setter == null) {
+                setter = compiled;
+            }
+        }
+        return setter;
+    }
+
+    /**
+     * Tells whether a value can be written into a field without an exception, which is what the generated code
+     * requires of every value.
+     *
+     * @param field the field to write
+     * @param value the value to write
+     * @return true if the value fits the field and the field can be written
+     */
+    static boolean accepts(Field field, Object value) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers)) {
+            return false;
+        }
+        Class<?> type = field.getType();
+        if (type.isPrimitive()) {
+            return value != null && MethodType.methodType(type).wrap().returnType() == value.getClass();
+        }
+        return value == null || type.isInstance(value);
+    }
+
+    /**
+     * Writes the values into the fields. Every value must be accepted by {@link #accepts(Field, Object)}.
+     *
+     * @param into   the object to write the fields in, ignored for static fields
+     * @param values the values, in the order of the fields the setter was created for
+     * @throws IllegalAccessException if a field can't be accessed
+     */
+    void apply(Object into, Object[] values) throws IllegalAccessException {
+        for (MethodHandle setter : generated) {
+            try {
+                setter.invokeExact(into, values);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+        for (int i = 0; i < remaining.length; i++) {
+            remaining[i].set(into, values[remainingIndexes[i]]);
+        }
+    }
+
+    /**
+     * @param values the values to check
+     * @return true if every value is accepted by its field
+     */
+    boolean accepts(Object[] values) {
+        for (int i = 0; i < fields.length; i++) {
+            if (!accepts(fields[i], values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of fields written by generated code, the rest are written through field handles
+     */
+    int generatedFields() {
+        return handled.length;
+    }
+
+    private static BulkSetter compile(List<Field> fields) throws IllegalAccessException {
+        Map<Class<?>, List<Integer>> byDeclaringClass = new LinkedHashMap<>();
+        List<Integer> others = new ArrayList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            if (canGenerate(field)) {
+                byDeclaringClass.computeIfAbsent(field.getDeclaringClass(), type -> new ArrayList<>()).add(i);
+            } else {
+                others.add(i);
+            }
+        }
+
+        List<MethodHandle> generated = new ArrayList<>();
+        List<Integer> handled = new ArrayList<>();
+        for (Map.Entry<Class<?>, List<Integer>> entry : byDeclaringClass.entrySet()) {
+            MethodHandle setter = define(entry.getKey(), fields, entry.getValue());
+            if (setter != null) {
+                generated.add(setter);
+                handled.addAll(entry.getValue());
+            } else {
+                others.addAll(entry.getValue());
+            }
+        }
+
+        FieldHandle[] remaining = new FieldHandle[others.size()];
+        int[] remainingIndexes = new int[others.size()];
+        others.sort(null);
+        for (int i = 0; i < remaining.length; i++) {
+            remainingIndexes[i] = others.get(i);
+            remaining[i] = FieldHandle.of(fields.get(remainingIndexes[i]));
+        }
+        return new BulkSetter(fields.toArray(new Field[0]), generated.toArray(new MethodHandle[0]),
+                handled.stream().mapToInt(Integer::intValue).toArray(), remaining, remainingIndexes);
+    }
+
+    private static boolean canGenerate(Field field) {
+        Class<?> declaringClass = field.getDeclaringClass();
+        if (Modifier.isFinal(field.getModifiers()) || declaringClass.isHidden()) {
+            return false;
+        }
+        Class<?> type = field.getType();
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive() || type == declaringClass) {
+            return true;
+        }
+        if (type.isHidden()) {
+            return false;
+        }
+        // The generated class resolves the type from the package of the declaring class
+        if (type.getClassLoader() == declaringClass.getClassLoader()
+                && type.getPackageName().equals(declaringClass.getPackageName())) {
+            return true;
+        }
+        return isPublic(type) && type.getModule().isExported(type.getPackageName(), declaringClass.getModule());
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        for (Class<?> enclosing = type; enclosing != null; enclosing = enclosing.getDeclaringClass()) {
+            if (!Modifier.isPublic(enclosing.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MethodHandle define(Class<?> declaringClass, List<Field> fields, List<Integer> indexes) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup());
+            byte[] bytes = new SetterClass(declaringClass).write(fields, indexes);
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE);
+            return hidden.findStatic(hidden.lookupClass(), "set", SET_TYPE);
+        } catch (Throwable notDefined) {
+            // The declaring class can't be looked up privately or can't host the class, use field handles
+            return null;
+        }
+    }
+
+    /**
+     * Writes the class file of a setter: {@code static void set(Object target, Object[] values)} with one cast and
+     * one field write per field, and no branches, so no stack map frames are needed.
+     */
+    private static final class SetterClass {
+        private static final int VERSION = 61;
+
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_INTEGER = 3;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_FIELDREF = 9;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ALOAD_1 = 0x2b;
+        private static final int ALOAD_2 = 0x2c;
+        private static final int ASTORE_2 = 0x4d;
+        private static final int ICONST_0 = 0x03;
+        private static final int BIPUSH = 0x10;
+        private static final int SIPUSH = 0x11;
+        private static final int LDC_W = 0x13;
+        private static final int AALOAD = 0x32;
+        private static final int RETURN = 0xb1;
+        private static final int PUTSTATIC = 0xb3;
+        private static final int PUTFIELD = 0xb5;
+        private static final int INVOKEVIRTUAL = 0xb6;
+        private static final int CHECKCAST = 0xc0;
+
+        private final Class<?> declaringClass;
+        private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream pool = new DataOutputStream(poolBytes);
+        private final Map<String, Integer> constants = new HashMap<>();
+        private int poolSize = 1;
+
+        private SetterClass(Class<?> declaringClass) {
+            this.declaringClass = declaringClass;
+        }
+
+        private byte[] write(List<Field> fields, List<Integer> indexes) throws IOException {
+            ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(codeBytes);
+
+            String owner = internalName(declaringClass);
+            boolean anyInstance = false;
+            for (int index : indexes) {
+                anyInstance |= !Modifier.isStatic(fields.get(index).getModifiers());
+            }
+            if (anyInstance) {
+                code.writeByte(ALOAD_0);
+                code.writeByte(CHECKCAST);
+                code.writeShort(classConstant(owner));
+                code.writeByte(ASTORE_2);
+            }
+
+            for (int index : indexes) {
+                Field field = fields.get(index);
+                boolean isStatic = Modifier.isStatic(field.getModifiers());
+                if (!isStatic) {
+                    code.writeByte(ALOAD_2);
+                }
+                code.writeByte(ALOAD_1);
+                pushInt(code, index);
+                code.writeByte(AALOAD);
+
+                Class<?> type = field.getType();
+                if (type.isPrimitive()) {
+                    Class<?> wrapper = MethodType.methodType(type).wrap().returnType();
+                    code.writeByte(CHECKCAST);
+                    code.writeShort(classConstant(internalName(wrapper)));
+                    code.writeByte(INVOKEVIRTUAL);
+                    code.writeShort(memberConstant(CONSTANT_METHODREF, internalName(wrapper), type.getName() + "Value",
+                            "()" + type.descriptorString()));
+                } else if (type != Object.class) {
+                    code.writeByte(CHECKCAST);
+                    code.writeShort(classConstant(type.isArray() ? type.descriptorString() : internalName(type)));
+                }
+
+                code.writeByte(isStatic ? PUTSTATIC : PUTFIELD);
+                code.writeShort(memberConstant(CONSTANT_FIELDREF, owner, field.getName(),
+                        type.descriptorString()));
+            }
+            code.writeByte(RETURN);
+
+            int thisClass = classConstant(owner + "$$BulkSetter");
+            int superClass = classConstant("java/lang/Object");
+            int methodName = utf8("set");
+            int methodType = utf8(SET_TYPE.toMethodDescriptorString());
+            int codeName = utf8("Code");
+
+            ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(classBytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(Modifier.FINAL | 0x0020);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(0);
+
+            out.writeShort(1);
+            out.writeShort(Modifier.PUBLIC | Modifier.STATIC);
+            out.writeShort(methodName);
+            out.writeShort(methodType);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            code.flush();
+            out.writeInt(12 + codeBytes.size());
+            // The receiver, the values array and the index, or the values array and a long or double
+            out.writeShort(3);
+            out.writeShort(3);
+            out.writeInt(codeBytes.size());
+            codeBytes.writeTo(out);
+            out.writeShort(0);
+            out.writeShort(0);
+
+            out.writeShort(0);
+            out.flush();
+            return classBytes.toByteArray();
+        }
+
+        private void pushInt(DataOutputStream code, int value) throws IOException {
+            if (value <= 5) {
+                code.writeByte(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                code.writeByte(BIPUSH);
+                code.writeByte(value);
+            } else if (value <= Short.MAX_VALUE) {
+                code.writeByte(SIPUSH);
+                code.writeShort(value);
+            } else {
+                code.writeByte(LDC_W);
+                code.writeShort(intConstant(value));
+            }
+        }
+
+        private int utf8(String value) throws IOException {
+            Integer index = constants.get("U" + value);
+            if (index == null) {
+                pool.writeByte(CONSTANT_UTF8);
+                pool.writeUTF(value);
+                index = add("U" + value, 1);
+            }
+            return index;
+        }
+
+        private int intConstant(int value) throws IOException {
+            Integer index = constants.get("I" + value);
+            if (index == null) {
+                pool.writeByte(CONSTANT_INTEGER);
+                pool.writeInt(value);
+                index = add("I" + value, 1);
+            }
+            return index;
+        }
+
+        private int classConstant(String internalName) throws IOException {
+            Integer index = constants.get("C" + internalName);
+            if (index == null) {
+                int name = utf8(internalName);
+                pool.writeByte(CONSTANT_CLASS);
+                pool.writeShort(name);
+                index = add("C" + internalName, 1);
+            }
+            return index;
+        }
+
+        private int memberConstant(int tag, String owner, String name, String descriptor) throws IOException {
+            String key = tag + owner + "." + name + ":" + descriptor;
+            Integer index = constants.get(key);
+            if (index == null) {
+                int ownerIndex = classConstant(owner);
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                Integer nameAndType = constants.get("N" + name + ":" + descriptor);
+                if (nameAndType == null) {
+                    pool.writeByte(CONSTANT_NAME_AND_TYPE);
+                    pool.writeShort(nameIndex);
+                    pool.writeShort(descriptorIndex);
+                    nameAndType = add("N" + name + ":" + descriptor, 1);
+                }
+                pool.writeByte(tag);
+                pool.writeShort(ownerIndex);
+                pool.writeShort(nameAndType);
+                index = add(key, 1);
+            }
+            return index;
+        }
+
+        private int add(String key, int slots) {
+            int index = poolSize;
+            poolSize += slots;
+            constants.put(key, index);
+            return index;
+        }
+
+        private static String internalName(Class<?> type) {
+            return type.getName().replace('.', '/');
+        }
+    }
+}
@@ -0,0 +1,243 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.injection;
+
+import com.github.paddan.test.metrics.InjectionEvent;
+import com.github.paddan.test.metrics.LookupEvent;
+import com.github.paddan.test.metrics.Metrics;
+import com.github.paddan.test.metrics.Operation;
+import com.github.paddan.test.utils.AnnotationIndex;
+import com.github.paddan.test.utils.FieldHandle;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import static com.github.paddan.test.utils.FieldHelper.ensureNamesIndexed;
+import static com.github.paddan.test.utils.FieldHelper.findField;
+
+/**
+ * A set of fields resolved together with the values to inject into them. Named targets are resolved through the name
+ * index of the class and annotated targets through its {@link AnnotationIndex}. The values are injected all or
+ * nothing.
+ */
+final class InjectionPlan {
+    private final Field[] fields;
+    private final Object[] values;
+
+    private InjectionPlan(Field[] fields, Object[] values) {
+        this.fields = fields;
+        this.values = values;
+    }
+
+    /**
+     * Resolves the fields named by the keys of the map, using the same rules as {@link Injector#inject(Object, Object,
+     * String)}.
+     *
+     * @param in     the class to resolve the fields in
+     * @param values the values to inject, keyed by field name
+     * @return the resolved plan
+     * @throws IllegalArgumentException if any of the fields can't be found
+     */
+    static InjectionPlan byName(Class<?> in, Map<String, ?> values) {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.FIELD);
+        boolean cacheHit = start == 0L && !event.isEnabled() || ensureNamesIndexed(in);
+        String[] names = values.keySet().toArray(new String[0]);
+        Field[] fields = new Field[names.length];
+        Object[] resolvedValues = new Object[names.length];
+        int unresolved = names.length;
+
+        for (int i = 0; i < names.length; i++) {
+            Field field = findField(in, names[i]);
+            Object value = values.get(names[i]);
+            if (field != null && (value == null || field.getType().isAssignableFrom(value.getClass())
+                    || field.getType().isPrimitive())) {
+                fields[i] = field;
+                resolvedValues[i] = value;
+                unresolved--;
+            }
+        }
+
+        if (unresolved > 0) {
+            List<String> missing = new ArrayList<>();
+            for (int i = 0; i < names.length; i++) {
+                if (fields[i] == null) {
+                    missing.add(names[i]);
+                }
+            }
+            if (start != 0L || event.isEnabled()) {
+                String member = String.join(",", missing);
+                Metrics.failedLookup(Operation.FIELD, in, member, start, cacheHit);
+                event.failed(in, member, cacheHit);
+            }
+            throw new IllegalArgumentException("Couldn't inject into " + in.getName() + " using fields " + missing);
+        }
+        if (start != 0L || event.isEnabled()) {
+            String member = String.join(",", names);
+            Metrics.lookup(Operation.FIELD, in, member, start, cacheHit);
+            event.found(in, member, cacheHit);
+        }
+        return new InjectionPlan(fields, resolvedValues);
+    }
+
+    /**
+     * Resolves the fields annotated with the keys of the map, using the same rules as {@link Injector#inject(Object,
+     * Object, Class)}.
+     *
+     * @param in     the class to resolve the fields in
+     * @param values the values to inject, keyed by the annotation of the field
+     * @return the resolved plan
+     * @throws IllegalArgumentException if any of the fields can't be found
+     */
+    static InjectionPlan byAnnotation(Class<?> in, Map<Class<? extends Annotation>, ?> values) {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.ANNOTATED_FIELD);
+        boolean cacheHit = start == 0L && !event.isEnabled() || AnnotationIndex.ensureBuilt(in);
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        Class<? extends Annotation>[] annotations = values.keySet().toArray(new Class[0]);
+        Field[] fields = new Field[annotations.length];
+        Object[] resolvedValues = new Object[annotations.length];
+        int unresolved = annotations.length;
+
+        AnnotationIndex index = AnnotationIndex.of(in);
+        for (int i = 0; i < annotations.length; i++) {
+            Object value = values.get(annotations[i]);
+            fields[i] = index.findAssignable(annotations[i], value == null ? null : value.getClass());
+            if (fields[i] != null) {
+                resolvedValues[i] = value;
+                unresolved--;
+            }
+        }
+
+        if (unresolved > 0) {
+            List<String> missing = new ArrayList<>();
+            for (int i = 0; i < annotations.length; i++) {
+                if (fields[i] == null) {
+                    missing.add(annotations[i].getName());
+                }
+            }
+            if (start != 0L || event.isEnabled()) {
+                String member = String.join(",", missing);
+                Metrics.failedLookup(Operation.ANNOTATED_FIELD, in, member, start, cacheHit);
+                event.failed(in, member, cacheHit);
+            }
+            throw new IllegalArgumentException(
+                    "Couldn't inject into " + in.getName() + " using annotations " + missing);
+        }
+        Metrics.lookup(Operation.ANNOTATED_FIELD, in, null, start, cacheHit);
+        event.found(in, null, cacheHit);
+        return new InjectionPlan(fields, resolvedValues);
+    }
+
+    /**
+     * Injects every value of the plan. If any of the values can't be injected, the fields that were already injected
+     * get their previous values back before the exception is rethrown. When every value fits its field as is, the
+     * fields are written by a generated {@link BulkSetter}, which can't fail partway, so their previous values are
+     * only read when a scope has to restore them.
+     *
+     * @param into the object into which the values are injected
+     * @throws IllegalAccessException if a field cannot be accessed
+     */
+    void apply(Object into) throws IllegalAccessException {
+        InjectionScope scope = InjectionScope.current();
+        if (scope != null) {
+            for (Field field : fields) {
+                scope.beforeInjecting(field);
+            }
+        }
+
+        BulkSetter bulk = BulkSetter.of(into.getClass(), Arrays.asList(fields));
+        if (bulk.accepts(values)) {
+            FieldHandle[] handles = scope == null ? null : handles();
+            Object[] previous = scope == null ? null : previous(into, handles);
+            InjectionEvent event = InjectionEvent.start();
+            bulk.apply(into, values);
+            if (event.isEnabled()) {
+                event.injected(into.getClass(), names(), true);
+            }
+            if (scope != null) {
+                journal(scope, into, handles, previous);
+            }
+            return;
+        }
+
+        FieldHandle[] handles = handles();
+        Object[] previous = previous(into, handles);
+        int injected = 0;
+        try {
+            for (; injected < handles.length; injected++) {
+                InjectionEvent event = InjectionEvent.start();
+                handles[injected].set(into, values[injected]);
+                event.injected(into.getClass(), fields[injected].getName(), true);
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            rollback(into, handles, previous, injected);
+            throw e;
+        }
+        if (scope != null) {
+            journal(scope, into, handles, previous);
+        }
+    }
+
+    private FieldHandle[] handles() throws IllegalAccessException {
+        FieldHandle[] handles = new FieldHandle[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            handles[i] = FieldHandle.of(fields[i]);
+        }
+        return handles;
+    }
+
+    private static Object[] previous(Object into, FieldHandle[] handles) throws IllegalAccessException {
+        Object[] previous = new Object[handles.length];
+        for (int i = 0; i < handles.length; i++) {
+            previous[i] = handles[i].get(into);
+        }
+        return previous;
+    }
+
+    private static void journal(InjectionScope scope, Object into, FieldHandle[] handles, Object[] previous) {
+        for (int i = 0; i < handles.length; i++) {
+            scope.record(handles[i], into, previous[i]);
+        }
+    }
+
+    private static void rollback(Object into, FieldHandle[] handles, Object[] previous, int injected)
+            throws IllegalAccessException {
+        for (int i = injected - 1; i >= 0; i--) {
+            handles[i].set(into, previous[i]);
+        }
+    }
+
+    private String names() {
+        StringJoiner names = new StringJoiner(",");
+        for (Field field : fields) {
+            names.add(field.getName());
+        }
+        return names.toString();
+    }
+}
@@ -0,0 +1,246 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.injection;
+
+import com.github.paddan.test.utils.FieldHandle;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+/**
+ * A journal of the fields injected by {@link Injector} on the current thread while the scope is open, created by
+ * {@link Injector#scope()}. Closing the scope puts the previous values back, in the reverse order they were injected,
+ * so a field injected twice ends up with the value it had before the first injection. That lets fixture objects and
+ * static fields be reused across tests instead of being rebuilt.
+ * <p>
+ * The journal is append-only and kept in three parallel arrays: the field handle, the object the field was injected
+ * into and the previous value. Scopes can be nested, injections are recorded in the innermost open scope.
+ * <p>
+ * Scopes opened by {@link Injector#exclusiveScope(Class[])} or {@link Injector#sharedScope(Class[])}, and the scopes
+ * nested in them, also lock the static fields they inject into until they're closed, so tests running in parallel
+ * serialize on the classes they have in common and run side by side otherwise. The locks are striped per class
+ * declaring the static fields, see {@link StaticLocks}. A class a scope wasn't opened with is locked when it's first
+ * injected into. If another scope holds it and waiting could deadlock, the injection fails instead, and the class has
+ * to be passed when the scope is opened.
+ */
+public final class InjectionScope implements AutoCloseable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final ThreadLocal<InjectionScope> CURRENT = new ThreadLocal<>();
+
+    private final InjectionScope parent;
+    private final boolean locking;
+    // The stripes of StaticLocks held by this scope, one bit per stripe
+    private long writeStripes;
+    private long readStripes;
+    private FieldHandle[] handles = new FieldHandle[INITIAL_CAPACITY];
+    private Object[] targets = new Object[INITIAL_CAPACITY];
+    private Object[] previous = new Object[INITIAL_CAPACITY];
+    private int size;
+    private boolean closed;
+
+    private InjectionScope(InjectionScope parent, boolean locking) {
+        this.parent = parent;
+        this.locking = locking || parent != null && parent.locking;
+    }
+
+    static InjectionScope open() {
+        InjectionScope scope = new InjectionScope(CURRENT.get(), false);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Opens a locking scope, taking the locks of the given classes and their superclasses in stripe order. In a nested
+     * scope a lock below one the thread already holds is only taken if it's free.
+     *
+     * @param reads  the classes whose static fields are read but not injected into
+     * @param writes the classes whose static fields are injected into
+     * @return the open scope
+     * @throws IllegalStateException if the current thread only reads a class that is injected into, or if another
+     *                               scope holds a lock that this scope can't wait for without risking a deadlock
+     */
+    static InjectionScope open(Class<?>[] reads, Class<?>[] writes) {
+        long writeMask = stripes(writes);
+        long readMask = stripes(reads) & ~writeMask;
+        Class<?>[] types = new Class<?>[StaticLocks.STRIPES];
+        name(types, writes);
+        name(types, reads);
+
+        InjectionScope scope = new InjectionScope(CURRENT.get(), true);
+        try {
+            for (int stripe = 0; stripe < StaticLocks.STRIPES; stripe++) {
+                long bit = 1L << stripe;
+                if ((writeMask & bit) != 0) {
+                    StaticLocks.lockWrite(stripe, types[stripe]);
+                    scope.writeStripes |= bit;
+                } else if ((readMask & bit) != 0) {
+                    StaticLocks.lockRead(stripe, types[stripe]);
+                    scope.readStripes |= bit;
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            scope.unlock();
+            throw e;
+        }
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    private static long stripes(Class<?>[] classes) {
+        long mask = 0;
+        for (Class<?> type : classes) {
+            for (Class<?> current = type; current != null && current != Object.class;
+                 current = current.getSuperclass()) {
+                mask |= 1L << StaticLocks.stripe(current);
+            }
+        }
+        return mask;
+    }
+
+    private static void name(Class<?>[] types, Class<?>[] classes) {
+        for (Class<?> type : classes) {
+            for (Class<?> current = type; current != null && current != Object.class;
+                 current = current.getSuperclass()) {
+                int stripe = StaticLocks.stripe(current);
+                if (types[stripe] == null) {
+                    types[stripe] = current;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the innermost open scope of the current thread, or null if there is none
+     */
+    static InjectionScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Locks the static fields of the class declaring the field before they're injected into, when this is a locking
+     * scope. Classes the scope wasn't opened with are locked when they're first injected into, which waits until no
+     * other scope holds them if that can't deadlock.
+     *
+     * @param field the field about to be injected into
+     * @throws IllegalStateException if the current thread only reads the class declaring the field, or if another scope
+     *                               holds it and waiting for it could deadlock
+     */
+    void beforeInjecting(Field field) {
+        if (!locking || !Modifier.isStatic(field.getModifiers())) {
+            return;
+        }
+        Class<?> type = field.getDeclaringClass();
+        int stripe = StaticLocks.stripe(type);
+        long bit = 1L << stripe;
+        if ((writeStripes & bit) == 0) {
+            StaticLocks.lockWriteLate(stripe, type);
+            writeStripes |= bit;
+        }
+    }
+
+    /**
+     * Records the value a field had before it was injected.
+     *
+     * @param handle        the handle of the injected field
+     * @param into          the object the field was injected into, null for static fields
+     * @param previousValue the value the field had before the injection
+     */
+    void record(FieldHandle handle, Object into, Object previousValue) {
+        if (size == handles.length) {
+            handles = Arrays.copyOf(handles, size * 2);
+            targets = Arrays.copyOf(targets, size * 2);
+            previous = Arrays.copyOf(previous, size * 2);
+        }
+        handles[size] = handle;
+        targets[size] = into;
+        previous[size] = previousValue;
+        size++;
+    }
+
+    /**
+     * @return the number of injections recorded in the scope
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Puts the previous values back into every field injected while the scope was open, last injection first, releases
+     * the locks held by the scope and makes the enclosing scope current again. Fields that can't be restored don't
+     * stop the others from being restored.
+     *
+     * @throws IllegalStateException if any of the fields couldn't be restored
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+
+        IllegalStateException failure = null;
+        try {
+            for (int i = size - 1; i >= 0; i--) {
+                try {
+                    handles[i].set(targets[i], previous[i]);
+                } catch (IllegalAccessException | RuntimeException e) {
+                    if (failure == null) {
+                        failure = new IllegalStateException("Couldn't restore all injected fields");
+                    }
+                    failure.addSuppressed(e);
+                }
+            }
+        } finally {
+            handles = null;
+            targets = null;
+            previous = null;
+            size = 0;
+            // Even an error while restoring mustn't leave the classes locked for every later scope
+            unlock();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void unlock() {
+        for (int stripe = StaticLocks.STRIPES - 1; stripe >= 0; stripe--) {
+            long bit = 1L << stripe;
+            if ((writeStripes & bit) != 0) {
+                StaticLocks.unlockWrite(stripe);
+            } else if ((readStripes & bit) != 0) {
+                StaticLocks.unlockRead(stripe);
+            }
+        }
+        writeStripes = 0;
+        readStripes = 0;
+    }
+}
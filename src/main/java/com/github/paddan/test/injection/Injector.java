@@ -22,15 +22,40 @@
 
 package com.github.paddan.test.injection;
 
+import com.github.paddan.test.access.Accessor;
+import com.github.paddan.test.generation.GeneratedAccess;
+import com.github.paddan.test.generation.GeneratedAccessors;
+import com.github.paddan.test.metrics.InjectionEvent;
+import com.github.paddan.test.metrics.LookupEvent;
+import com.github.paddan.test.metrics.Metrics;
+import com.github.paddan.test.metrics.MockCreationEvent;
+import com.github.paddan.test.metrics.Operation;
+import com.github.paddan.test.utils.AnnotationIndex;
+import com.github.paddan.test.utils.FieldHandle;
+
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
-import static com.github.paddan.test.utils.FieldHelper.getFields;
+import static com.github.paddan.test.utils.FieldHelper.ensureNamesIndexed;
+import static com.github.paddan.test.utils.FieldHelper.findField;
+import static com.github.paddan.test.utils.FieldHelper.getFieldList;
 
 /**
+ * Injects values into fields of objects and classes. The fields can be private, static or final.
+ * <p>
+ * Primitive fields can be written without boxing using `injectInt()`, `injectLong()`, `injectDouble()` and the other
+ * primitive variants.
+ *
  * @author patrik.lindefors
  */
 public final class Injector {
@@ -60,12 +85,52 @@ public final class Injector {
     public static Map<String, Object> autoInject(Function mock, Object into) {
         Map<String, Object> mocks = new HashMap<>();
 
-        Field[] fields = getFields(into.getClass());
+        List<Field> fields = getFieldList(into.getClass());
+        List<Field> mockedFields = new ArrayList<>(fields.size());
+        List<Object> mockedObjects = new ArrayList<>(fields.size());
         for (Field field : fields) {
             try {
-                Object mockedObject = mock.apply(field.getType());
+                Object mockedObject = createMock(mock, into, field);
                 mocks.put(field.getName(), mockedObject);
-                setField(mockedObject, into, field);
+                mockedFields.add(field);
+                mockedObjects.add(mockedObject);
+            } catch (Exception e) {
+                // Skip fields that cannot be mocked (e.g., final types, primitives, security restrictions)
+            }
+        }
+        injectMocks(mockedFields, mockedObjects, into);
+
+        return mocks;
+    }
+
+    /**
+     * Works like {@link #autoInject(Function, Object)}, but doesn't create mocks for interface fields up front. Those
+     * fields get a lightweight proxy instead, and the real mock is created by the function the first time the proxy
+     * is invoked. Reading a field from the returned map also creates its mock, so the map always hands out the real
+     * mocks, which is what interactions should be verified against. Fields of other types are mocked right away.
+     *
+     * @param mock The function used to mock
+     * @param into The object into which mocks is inserted
+     * @return A map with all fields that's been mocked (name of field -> mock object)
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static Map<String, Object> autoInjectLazy(Function mock, Object into) {
+        LazyMocks mocks = new LazyMocks();
+
+        List<Field> fields = getFieldList(into.getClass());
+        for (Field field : fields) {
+            try {
+                LazyMocks.LazyMock lazyMock = field.getType().isInterface()
+                        ? LazyMocks.proxy(mock, into.getClass(), field)
+                        : null;
+                if (lazyMock != null) {
+                    setField(lazyMock.getProxy(), into, field);
+                    mocks.putMock(field.getName(), lazyMock);
+                } else {
+                    Object mockedObject = createMock(mock, into, field);
+                    mocks.putMock(field.getName(), mockedObject);
+                    setField(mockedObject, into, field);
+                }
             } catch (Exception e) {
                 // Skip fields that cannot be mocked/injected (e.g., final types, primitives, security restrictions)
             }
@@ -74,6 +139,122 @@ public final class Injector {
         return mocks;
     }
 
+    /**
+     * Works like {@link #autoInject(Function, Object)}, but creates the mocks concurrently on virtual threads. The
+     * fields are still injected one at a time on the calling thread, in the same order as autoInject does, so the
+     * returned map and the fields that are skipped are the same as with autoInject. The function must be safe to call
+     * from several threads at once, which Mockito's mock() is.
+     *
+     * @param mock The function used to mock
+     * @param into The object into which mocks is inserted
+     * @return A map with all fields that's been mocked (name of field -> mock object)
+     */
+    @SuppressWarnings("rawtypes")
+    public static Map<String, Object> autoInjectParallel(Function mock, Object into) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            return autoInjectParallel(mock, into, executor);
+        }
+    }
+
+    /**
+     * Works like {@link #autoInjectParallel(Function, Object)}, but creates the mocks on the supplied executor, which
+     * can be used to bound the number of mocks created at the same time. The executor isn't shut down.
+     *
+     * @param mock     The function used to mock
+     * @param into     The object into which mocks is inserted
+     * @param executor The executor on which the mocks are created
+     * @return A map with all fields that's been mocked (name of field -> mock object)
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static Map<String, Object> autoInjectParallel(Function mock, Object into, ExecutorService executor) {
+        List<Field> fields = getFieldList(into.getClass());
+        List<Future<Object>> mocked = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            mocked.add(executor.submit(() -> createMock(mock, into, field)));
+        }
+
+        Map<String, Object> mocks = new HashMap<>();
+        List<Field> mockedFields = new ArrayList<>(fields.size());
+        List<Object> mockedObjects = new ArrayList<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            try {
+                Object mockedObject = mocked.get(i).get();
+                mocks.put(field.getName(), mockedObject);
+                mockedFields.add(field);
+                mockedObjects.add(mockedObject);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                // Skip fields that cannot be mocked, just like autoInject
+            } catch (InterruptedException e) {
+                mocked.forEach(future -> future.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while creating mocks for " + into.getClass().getName(), e);
+            }
+        }
+        injectMocks(mockedFields, mockedObjects, into);
+
+        return mocks;
+    }
+
+    /**
+     * Opens a scope on the current thread that records the previous value of every field injected through this
+     * class until it's closed, and puts those values back when it's closed:
+     * <pre>{@code
+     * try (InjectionScope scope = Injector.scope()) {
+     *     Injector.inject(mock, fixture, "service");
+     *     ...
+     * }
+     * }</pre>
+     *
+     * @return The open scope, which must be closed on the same thread
+     */
+    public static InjectionScope scope() {
+        return InjectionScope.open();
+    }
+
+    /**
+     * Opens a scope like {@link #scope()} that also locks the static fields it injects into, so tests running in
+     * parallel that inject into the same classes take turns instead of overwriting each other. The static fields of
+     * the given classes and their superclasses are locked right away, in a fixed order, and the static fields of other
+     * classes when they're first injected into. A lock that can't be taken in that order, because the scope is nested
+     * in another one or the class wasn't declared, isn't waited for: if another scope holds it an
+     * {@link IllegalStateException} is thrown instead of risking a deadlock. Declaring every class in the outermost
+     * scope avoids that.
+     *
+     * @param classes The classes whose static fields are injected into in the scope
+     * @return The open scope, which must be closed on the same thread
+     */
+    public static InjectionScope exclusiveScope(Class<?>... classes) {
+        return InjectionScope.open(new Class<?>[0], classes);
+    }
+
+    /**
+     * Opens a locking scope like {@link #exclusiveScope(Class[])} for tests that only read the static fields of the
+     * given classes. Any number of shared scopes can hold the same classes, but no exclusive scope can while they do.
+     * Static fields of other classes can still be injected into, which locks them exclusively.
+     *
+     * @param classes The classes whose static fields are read in the scope
+     * @return The open scope, which must be closed on the same thread
+     */
+    public static InjectionScope sharedScope(Class<?>... classes) {
+        return InjectionScope.open(classes, new Class<?>[0]);
+    }
+
+    /**
+     * Takes a snapshot of the static fields of the given classes and their superclasses, which can be restored after
+     * a test has injected into them, instead of restoring each field by hand or forking a new JVM.
+     *
+     * @param classes The classes to take the snapshot of
+     * @return A snapshot of the values of the static fields
+     * @throws IllegalAccessException If the fields cannot be accessed
+     */
+    public static StaticSnapshot snapshotStatics(Class<?>... classes) throws IllegalAccessException {
+        return StaticSnapshot.of(classes);
+    }
+
     /**
      * Injects a value into a annotated field.
      *
@@ -85,14 +266,19 @@ public final class Injector {
      */
     public static <T> T inject(T value, Object into, Class<? extends Annotation> withAnnotationClass)
             throws IllegalAccessException {
-        Field[] fields = getFields(into.getClass());
-        for (Field field : fields) {
-            if (field.getAnnotation(withAnnotationClass) != null && (value == null || field.getType()
-                    .isAssignableFrom(value.getClass()))) {
-                setField(value, into, field);
-                return value;
-            }
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.ANNOTATED_FIELD);
+        boolean cacheHit = start == 0L && !event.isEnabled() || AnnotationIndex.ensureBuilt(into.getClass());
+        Field field = AnnotationIndex.of(into.getClass())
+                .findAssignable(withAnnotationClass, value == null ? null : value.getClass());
+        if (field != null) {
+            Metrics.lookup(Operation.ANNOTATED_FIELD, into.getClass(), withAnnotationClass.getName(), start, cacheHit);
+            event.found(into.getClass(), withAnnotationClass.getName(), cacheHit);
+            setField(value, into, field);
+            return value;
         }
+        Metrics.failedLookup(Operation.ANNOTATED_FIELD, into.getClass(), withAnnotationClass.getName(), start, cacheHit);
+        event.failed(into.getClass(), withAnnotationClass.getName(), cacheHit);
         throw new IllegalArgumentException(
                 "Couldn't inject a " + (value != null ? value.getClass().getName() : "null value") + " into " + into.getClass().getName()
                         + " using annotation " + withAnnotationClass.getName());
@@ -110,16 +296,21 @@ public final class Injector {
      */
     public static <T> T inject(T value, Class<? extends T> valueClass, Object into,
                                Class<? extends Annotation> withAnnotationClass) throws IllegalAccessException {
-        Field[] fields = getFields(into.getClass());
-        for (Field field : fields) {
-            if (field.getAnnotation(withAnnotationClass) != null) {
-                if ((value == null && field.getType().equals(valueClass)) || (value != null && field.getType()
-                        .isAssignableFrom(value.getClass()))) {
-                    setField(value, into, field);
-                    return value;
-                }
-            }
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.ANNOTATED_FIELD);
+        boolean cacheHit = start == 0L && !event.isEnabled() || AnnotationIndex.ensureBuilt(into.getClass());
+        AnnotationIndex index = AnnotationIndex.of(into.getClass());
+        Field field = value == null
+                ? index.findByType(withAnnotationClass, valueClass)
+                : index.findAssignable(withAnnotationClass, value.getClass());
+        if (field != null) {
+            Metrics.lookup(Operation.ANNOTATED_FIELD, into.getClass(), withAnnotationClass.getName(), start, cacheHit);
+            event.found(into.getClass(), withAnnotationClass.getName(), cacheHit);
+            setField(value, into, field);
+            return value;
         }
+        Metrics.failedLookup(Operation.ANNOTATED_FIELD, into.getClass(), withAnnotationClass.getName(), start, cacheHit);
+        event.failed(into.getClass(), withAnnotationClass.getName(), cacheHit);
         throw new IllegalArgumentException(
                 "Couldn't inject a " + (value != null ? value.getClass().getName() : "null value") + " into " + into.getClass()
                         .getName() + " using annotation " + withAnnotationClass.getName());
@@ -135,16 +326,25 @@ public final class Injector {
      * @throws IllegalAccessException If the field cannot be accessed
      */
     public static <T> T inject(T value, Object into, String name) throws IllegalAccessException {
-        Field[] fields = getFields(into.getClass());
-
-        for (Field field : fields) {
-            if (field.getName().equals(name) && (value == null || field.getType().isAssignableFrom(value.getClass())
-                    || field.getType().isPrimitive())) {
-                setField(value, into, field);
-                return value;
-            }
+        GeneratedAccess access = GeneratedAccessors.of(into.getClass());
+        // Generated access can't tell the previous value, so injections in a scope go through the field
+        if (access != null && InjectionScope.current() == null && access.set(into, name, value)) {
+            return value;
+        }
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.FIELD);
+        boolean cacheHit = start == 0L && !event.isEnabled() || ensureNamesIndexed(into.getClass());
+        Field field = findField(into.getClass(), name);
+        if (field != null && (value == null || field.getType().isAssignableFrom(value.getClass())
+                || field.getType().isPrimitive())) {
+            Metrics.lookup(Operation.FIELD, into.getClass(), name, start, cacheHit);
+            event.found(into.getClass(), name, cacheHit);
+            setField(value, into, field);
+            return value;
         }
 
+        Metrics.failedLookup(Operation.FIELD, into.getClass(), name, start, cacheHit);
+        event.failed(into.getClass(), name, cacheHit);
         throw new IllegalArgumentException(
                 "Couldn't inject a " + (value == null ? "null value" : value.getClass().getName()) + " into " + into
                         .getClass().getName() + " using field " + name);
@@ -163,23 +363,389 @@ public final class Injector {
         return injectIntoStatic(value, into, name);
     }
 
-    private static <T> T injectIntoStatic(T value, Class<?> into, String name) throws IllegalAccessException {
-        Field[] fields = getFields(into);
+    /**
+     * Injects several values into named fields in one go. All fields are resolved before anything is injected, and
+     * either every value is injected or none is.
+     *
+     * @param values The values to inject, keyed by the name of the field
+     * @param into   The object into which the values are injected
+     * @return The object into which the values were injected
+     * @throws IllegalAccessException   If a field cannot be accessed
+     * @throws IllegalArgumentException If any of the fields can't be found
+     */
+    public static <T> T injectAll(Map<String, ?> values, T into) throws IllegalAccessException {
+        InjectionPlan.byName(into.getClass(), values).apply(into);
+        return into;
+    }
 
-        for (Field field : fields) {
-            if (field.getName().equals(name) && (value == null || field.getType().isAssignableFrom(value.getClass()))) {
-                setField(value, null, field);
-                return value;
-            }
+    /**
+     * Injects several values into annotated fields in one go. Each value is injected into the first field with the
+     * annotation it's keyed by that can hold it. All fields are resolved before anything is injected, and either every
+     * value is injected or none is.
+     *
+     * @param values The values to inject, keyed by the annotation class of the field
+     * @param into   The object into which the values are injected
+     * @return The object into which the values were injected
+     * @throws IllegalAccessException   If a field cannot be accessed
+     * @throws IllegalArgumentException If any of the fields can't be found
+     */
+    public static <T> T injectAllAnnotated(Map<Class<? extends Annotation>, ?> values, T into)
+            throws IllegalAccessException {
+        InjectionPlan.byAnnotation(into.getClass(), values).apply(into);
+        return into;
+    }
+
+    /**
+     * Injects a boolean value into a field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The object into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static boolean injectBoolean(boolean value, Object into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into.getClass(), name, "boolean"), into).setBoolean(into, value);
+        return value;
+    }
+
+    /**
+     * Injects a boolean value into a static field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The class into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static boolean injectBoolean(boolean value, Class<?> into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into, name, "boolean"), null).setBoolean(null, value);
+        return value;
+    }
+
+    /**
+     * Injects a byte value into a field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The object into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static byte injectByte(byte value, Object into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into.getClass(), name, "byte"), into).setByte(into, value);
+        return value;
+    }
+
+    /**
+     * Injects a byte value into a static field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The class into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static byte injectByte(byte value, Class<?> into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into, name, "byte"), null).setByte(null, value);
+        return value;
+    }
+
+    /**
+     * Injects a char value into a field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The object into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static char injectChar(char value, Object into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into.getClass(), name, "char"), into).setChar(into, value);
+        return value;
+    }
+
+    /**
+     * Injects a char value into a static field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The class into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static char injectChar(char value, Class<?> into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into, name, "char"), null).setChar(null, value);
+        return value;
+    }
+
+    /**
+     * Injects a short value into a field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The object into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static short injectShort(short value, Object into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into.getClass(), name, "short"), into).setShort(into, value);
+        return value;
+    }
+
+    /**
+     * Injects a short value into a static field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The class into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static short injectShort(short value, Class<?> into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into, name, "short"), null).setShort(null, value);
+        return value;
+    }
+
+    /**
+     * Injects a int value into a field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The object into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static int injectInt(int value, Object into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into.getClass(), name, "int"), into).setInt(into, value);
+        return value;
+    }
+
+    /**
+     * Injects a int value into a static field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The class into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static int injectInt(int value, Class<?> into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into, name, "int"), null).setInt(null, value);
+        return value;
+    }
+
+    /**
+     * Injects a long value into a field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The object into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static long injectLong(long value, Object into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into.getClass(), name, "long"), into).setLong(into, value);
+        return value;
+    }
+
+    /**
+     * Injects a long value into a static field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The class into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static long injectLong(long value, Class<?> into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into, name, "long"), null).setLong(null, value);
+        return value;
+    }
+
+    /**
+     * Injects a float value into a field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The object into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static float injectFloat(float value, Object into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into.getClass(), name, "float"), into).setFloat(into, value);
+        return value;
+    }
+
+    /**
+     * Injects a float value into a static field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The class into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static float injectFloat(float value, Class<?> into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into, name, "float"), null).setFloat(null, value);
+        return value;
+    }
+
+    /**
+     * Injects a double value into a field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The object into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static double injectDouble(double value, Object into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into.getClass(), name, "double"), into).setDouble(into, value);
+        return value;
+    }
+
+    /**
+     * Injects a double value into a static field without boxing it.
+     *
+     * @param value The value to inject
+     * @param into  The class into which the value is injected
+     * @param name  The name of the field
+     * @return The value injected
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    public static double injectDouble(double value, Class<?> into, String name) throws IllegalAccessException {
+        journaled(findNamedField(into, name, "double"), null).setDouble(null, value);
+        return value;
+    }
+
+    private static Field findNamedField(Class<?> in, String name, String valueType) {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.FIELD);
+        boolean cacheHit = start == 0L && !event.isEnabled() || ensureNamesIndexed(in);
+        Field field = findField(in, name);
+        if (field != null) {
+            Metrics.lookup(Operation.FIELD, in, name, start, cacheHit);
+            event.found(in, name, cacheHit);
+            return field;
         }
+        Metrics.failedLookup(Operation.FIELD, in, name, start, cacheHit);
+        event.failed(in, name, cacheHit);
+        throw new IllegalArgumentException(
+                "Couldn't inject a " + valueType + " into " + in.getName() + " using field " + name);
+    }
+
+    private static <T> T injectIntoStatic(T value, Class<?> into, String name) throws IllegalAccessException {
+        GeneratedAccess access = GeneratedAccessors.of(into);
+        if (access != null && InjectionScope.current() == null && access.setStatic(name, value)) {
+            return value;
+        }
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.FIELD);
+        boolean cacheHit = start == 0L && !event.isEnabled() || ensureNamesIndexed(into);
+        Field field = findField(into, name);
+        if (field != null && (value == null || field.getType().isAssignableFrom(value.getClass()))) {
+            Metrics.lookup(Operation.FIELD, into, name, start, cacheHit);
+            event.found(into, name, cacheHit);
+            setField(value, null, field);
+            return value;
+        }
+        Metrics.failedLookup(Operation.FIELD, into, name, start, cacheHit);
+        event.failed(into, name, cacheHit);
         throw new IllegalArgumentException(
                 "Couldn't inject a " + (value != null ? value.getClass().getName() : "null value") + " into " + into.getName()
                         + " using field " + name);
     }
 
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Object createMock(Function mock, Object into, Field field) {
+        long start = Metrics.start();
+        MockCreationEvent event = MockCreationEvent.start();
+        Object mockedObject = mock.apply(field.getType());
+        Metrics.mockCreated(into.getClass(), field.getType(), start);
+        event.created(into.getClass(), field.getName(), field.getType(), false);
+        return mockedObject;
+    }
+
+    /**
+     * Injects the mocks that fit their fields through one generated {@link BulkSetter}, and the rest one at a time.
+     * Fields that cannot be injected are skipped.
+     */
+    private static void injectMocks(List<Field> fields, List<Object> mockedObjects, Object into) {
+        List<Field> bulkFields = new ArrayList<>(fields.size());
+        List<Object> bulkValues = new ArrayList<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            if (BulkSetter.accepts(fields.get(i), mockedObjects.get(i))) {
+                bulkFields.add(fields.get(i));
+                bulkValues.add(mockedObjects.get(i));
+            } else {
+                injectOrSkip(mockedObjects.get(i), into, fields.get(i));
+            }
+        }
+        if (bulkFields.isEmpty()) {
+            return;
+        }
+
+        InjectionScope scope = InjectionScope.current();
+        if (scope != null) {
+            try {
+                for (Field field : bulkFields) {
+                    journaled(field, into);
+                }
+            } catch (IllegalAccessException e) {
+                // The bulk setter can't access the fields either, setField records them one at a time
+            }
+        }
+        try {
+            InjectionEvent event = InjectionEvent.start();
+            BulkSetter.of(into.getClass(), bulkFields).apply(into, bulkValues.toArray());
+            if (event.isEnabled()) {
+                event.injected(into.getClass(), String.join(",", bulkFields.stream().map(Field::getName).toList()), true);
+            }
+        } catch (Exception e) {
+            for (int i = 0; i < bulkFields.size(); i++) {
+                injectOrSkip(bulkValues.get(i), into, bulkFields.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the handle of a field that is about to be injected, recording its current value in the open scope.
+     * Static final fields can't be injected, so there is nothing to restore.
+     */
+    private static FieldHandle journaled(Field field, Object into) throws IllegalAccessException {
+        FieldHandle handle = FieldHandle.of(field);
+        InjectionScope scope = InjectionScope.current();
+        int modifiers = field.getModifiers();
+        if (scope != null && !(Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers))) {
+            scope.beforeInjecting(field);
+            scope.record(handle, into, handle.get(into));
+        }
+        return handle;
+    }
+
+    private static void injectOrSkip(Object value, Object into, Field field) {
+        try {
+            setField(value, into, field);
+        } catch (Exception e) {
+            // Skip fields that cannot be injected (e.g., final fields, security restrictions)
+        }
+    }
+
     private static <T> void setField(T value, Object into, Field field) throws IllegalAccessException {
-        field.setAccessible(true);
-        field.set(into, value);
+        InjectionEvent event = InjectionEvent.start();
+        boolean cacheHit = event.isEnabled() && FieldHandle.isCached(field);
+        FieldHandle handle = FieldHandle.of(field);
+        InjectionScope scope = InjectionScope.current();
+        if (scope != null) {
+            scope.beforeInjecting(field);
+            Object previous = handle.get(into);
+            handle.set(into, value);
+            scope.record(handle, into, previous);
+        } else {
+            handle.set(into, value);
+        }
+        event.injected(into == null ? field.getDeclaringClass() : into.getClass(), field.getName(), cacheHit);
     }
 
     public void setValue(Object value) {
@@ -207,4 +773,42 @@ public final class Injector {
             return injectIntoStatic(value, classTarget, name);
         }
     }
+
+    /**
+     * Injects the value into the last field of a dotted path of field names, like `a.b.c`, followed from the target.
+     * When the target is a class, the path starts with a static field of that class.
+     *
+     * @param path The field names separated by dots
+     * @return The value injected
+     * @throws IllegalAccessException If a field cannot be accessed
+     * @throws IllegalArgumentException If a field isn't found or a field before the last one is null
+     */
+    public Object atPath(String path) throws IllegalAccessException {
+        InjectionEvent event = InjectionEvent.start();
+        if (InjectionScope.current() != null) {
+            journalPath(path);
+        }
+        if (target != null) {
+            Accessor.path(path).set(target, value);
+        } else {
+            Accessor.path(path).set(classTarget, value);
+        }
+        event.injected(target != null ? target.getClass() : classTarget, path, true);
+        return value;
+    }
+
+    private void journalPath(String path) throws IllegalAccessException {
+        int dot = path.lastIndexOf('.');
+        Object parent = target;
+        if (dot >= 0) {
+            String parentPath = path.substring(0, dot);
+            parent = target != null ? Accessor.path(parentPath).from(target) : Accessor.path(parentPath).from(classTarget);
+        }
+        Class<?> parentType = parent != null ? parent.getClass() : dot < 0 ? classTarget : null;
+        // A null parent fails when the path is followed, and a missing field when it's resolved
+        Field field = parentType != null ? findField(parentType, path.substring(dot + 1)) : null;
+        if (field != null) {
+            journaled(field, parent);
+        }
+    }
 }
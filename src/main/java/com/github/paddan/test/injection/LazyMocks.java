@@ -0,0 +1,193 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.injection;
+
+import com.github.paddan.test.metrics.Metrics;
+import com.github.paddan.test.metrics.MockCreationEvent;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The mocks created by {@link Injector#autoInjectLazy(Function, Object)}. Lazy mocks are resolved to the real mock the
+ * first time they're read from the map or invoked through the proxy injected into the field, whichever comes first.
+ * The function is called once per field, if it throws or returns null the field is left unmocked: the map hands out
+ * null for it and the proxy throws an {@link IllegalStateException}.
+ */
+final class LazyMocks extends AbstractMap<String, Object> {
+    private final Map<String, Object> mocks = new HashMap<>();
+
+    /**
+     * Creates a proxy for an interface that creates the real mock on first invocation.
+     *
+     * @param mock   The function used to mock
+     * @param target The class of the object the proxy is injected into
+     * @param field  The field of an interface type the proxy is injected into
+     * @return The handler of the proxy, which is what's added to the map, or null if the interface can't be proxied
+     */
+    @SuppressWarnings("rawtypes")
+    static LazyMock proxy(Function mock, Class<?> target, Field field) {
+        Class<?> type = field.getType();
+        LazyMock lazyMock = new LazyMock(mock, target, field.getName(), type);
+        try {
+            // Proxy caches the generated proxy class and its constructor per class loader and interface
+            lazyMock.proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, lazyMock);
+        } catch (IllegalArgumentException notProxyable) {
+            // Sealed and hidden interfaces can't be proxied
+            return null;
+        }
+        return lazyMock;
+    }
+
+    void putMock(String name, Object mock) {
+        mocks.put(name, mock);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return resolve(mocks.get(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return mocks.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return mocks.size();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<Entry<String, Object>> entries = mocks.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        Entry<String, Object> entry = entries.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), resolve(entry.getValue()));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return mocks.size();
+            }
+        };
+    }
+
+    private static Object resolve(Object mock) {
+        return mock instanceof LazyMock lazyMock ? lazyMock.resolve() : mock;
+    }
+
+    static final class LazyMock implements InvocationHandler {
+        @SuppressWarnings("rawtypes")
+        private final Function factory;
+        private final Class<?> target;
+        private final String name;
+        private final Class<?> type;
+        private Object proxy;
+        private Object mock;
+        private Exception failure;
+        private volatile boolean resolved;
+
+        @SuppressWarnings("rawtypes")
+        private LazyMock(Function factory, Class<?> target, String name, Class<?> type) {
+            this.factory = factory;
+            this.target = target;
+            this.name = name;
+            this.type = type;
+        }
+
+        Object getProxy() {
+            return proxy;
+        }
+
+        /**
+         * Creates the mock the first time it's called, later calls return the same mock.
+         *
+         * @return The mock, or null if the function couldn't create one
+         */
+        @SuppressWarnings("unchecked")
+        Object resolve() {
+            if (!resolved) {
+                synchronized (this) {
+                    if (!resolved) {
+                        try {
+                            long start = Metrics.start();
+                            MockCreationEvent event = MockCreationEvent.start();
+                            mock = factory.apply(type);
+                            Metrics.mockCreated(target, type, start);
+                            event.created(target, name, type, true);
+                        } catch (Exception e) {
+                            // Remembered so a field that can't be mocked doesn't call the function on every invocation
+                            failure = e;
+                        }
+                        resolved = true;
+                    }
+                }
+            }
+            return mock;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("equals") && args != null && args.length == 1 && args[0] == proxy) {
+                return true;
+            }
+            if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                method.trySetAccessible();
+            }
+            Object mock = resolve();
+            if (mock == null) {
+                throw new IllegalStateException(
+                        "Couldn't mock " + type.getName() + " for " + target.getName() + "." + name, failure);
+            }
+            try {
+                return method.invoke(mock, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.injection;
+
+import com.github.paddan.test.metrics.Metrics;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The striped read/write locks that guard static fields in locking injection scopes. A class maps to one of 64
+ * stripes, so a scope can keep the stripes it holds in a single long. Unrelated classes can share a stripe, which
+ * only costs some parallelism.
+ * <p>
+ * Scopes take the stripes they're opened with in ascending order. A scope nested in another one, and a class a scope
+ * wasn't opened with, which is locked when it's first injected into, can need a stripe below one the thread already
+ * holds. Waiting for such a stripe could deadlock with a scope holding it and waiting in ascending order, so it's
+ * only taken if it's free and an {@link IllegalStateException} is thrown otherwise.
+ */
+final class StaticLocks {
+    static final int STRIPES = Long.SIZE;
+
+    private static final ReentrantReadWriteLock[] LOCKS = new ReentrantReadWriteLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    private StaticLocks() {
+    }
+
+    /**
+     * @param type the class declaring the static fields
+     * @return the stripe guarding the static fields of the class
+     */
+    static int stripe(Class<?> type) {
+        int hash = type.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Takes the write lock of a stripe when a scope is opened, reporting the wait to the metrics.
+     *
+     * @param stripe the stripe to lock
+     * @param type   the class the lock is taken for, which the wait is reported for
+     * @throws IllegalStateException if the current thread only holds the read lock of the stripe, which can't be
+     *                               upgraded, or if another scope holds it and waiting for it could deadlock
+     */
+    static void lockWrite(int stripe, Class<?> type) {
+        ReentrantReadWriteLock lock = checkUpgrade(stripe, type);
+        if (!lock.writeLock().tryLock()) {
+            checkOrder(stripe, type, "the outermost scope");
+            long start = Metrics.start();
+            lock.writeLock().lock();
+            Metrics.lockWaited(type, start);
+        }
+    }
+
+    /**
+     * Takes the write lock of a stripe for a class that wasn't declared when the scope was opened. Like when a scope
+     * is opened, the lock is only waited for while the current thread holds no stripe above it.
+     *
+     * @param stripe the stripe to lock
+     * @param type   the class the lock is taken for, which the wait is reported for
+     * @throws IllegalStateException if the current thread only holds the read lock of the stripe, or if another scope
+     *                               holds it and waiting for it could deadlock
+     */
+    static void lockWriteLate(int stripe, Class<?> type) {
+        ReentrantReadWriteLock lock = checkUpgrade(stripe, type);
+        if (lock.writeLock().tryLock()) {
+            return;
+        }
+        checkOrder(stripe, type, "the scope");
+        long start = Metrics.start();
+        lock.writeLock().lock();
+        Metrics.lockWaited(type, start);
+    }
+
+    /**
+     * Fails if the current thread holds a stripe above the given one, as other scopes may hold the given stripe and
+     * wait for those in ascending order.
+     */
+    private static void checkOrder(int stripe, Class<?> type, String scope) {
+        for (int above = stripe + 1; above < STRIPES; above++) {
+            if (LOCKS[above].isWriteLockedByCurrentThread() || LOCKS[above].getReadHoldCount() > 0) {
+                throw new IllegalStateException("The static fields of " + type.getName() + " are locked by another"
+                        + " scope and waiting for them could deadlock, open " + scope + " with " + type.getName()
+                        + " so its lock is taken in order");
+            }
+        }
+    }
+
+    private static ReentrantReadWriteLock checkUpgrade(int stripe, Class<?> type) {
+        ReentrantReadWriteLock lock = LOCKS[stripe];
+        if (lock.getReadHoldCount() > 0 && !lock.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("Can't inject into static fields of " + type.getName()
+                    + " in a scope that only reads them");
+        }
+        return lock;
+    }
+
+    /**
+     * Takes the read lock of a stripe when a scope is opened, reporting the wait to the metrics.
+     *
+     * @param stripe the stripe to lock
+     * @param type   the class the lock is taken for, which the wait is reported for
+     * @throws IllegalStateException if another scope holds the write lock of the stripe and waiting for it could
+     *                               deadlock
+     */
+    static void lockRead(int stripe, Class<?> type) {
+        ReentrantReadWriteLock lock = LOCKS[stripe];
+        if (!lock.readLock().tryLock()) {
+            checkOrder(stripe, type, "the outermost scope");
+            long start = Metrics.start();
+            lock.readLock().lock();
+            Metrics.lockWaited(type, start);
+        }
+    }
+
+    static void unlockWrite(int stripe) {
+        LOCKS[stripe].writeLock().unlock();
+    }
+
+    static void unlockRead(int stripe) {
+        LOCKS[stripe].readLock().unlock();
+    }
+}
@@ -0,0 +1,158 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.injection;
+
+import com.github.paddan.test.utils.FieldHandle;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.github.paddan.test.utils.FieldHelper.getFieldList;
+
+/**
+ * A copy of the values of the static fields of a set of classes, created by
+ * {@link Injector#snapshotStatics(Class[])}, that can put those values back after a test has injected into them.
+ * <p>
+ * Static final fields can't be injected into and are left out. The fields to copy are resolved once per class into a
+ * plan of cached field handles and a {@link BulkSetter}, so taking a snapshot is a single pass over an array and
+ * restoring it is one generated call per class.
+ */
+public final class StaticSnapshot {
+
+    private static final ClassValue<Plan> PLANS = new ClassValue<>() {
+        @Override
+        protected Plan computeValue(Class<?> type) {
+            try {
+                return new Plan(type);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private final Plan[] plans;
+    private final Object[][] values;
+
+    private StaticSnapshot(Plan[] plans, Object[][] values) {
+        this.plans = plans;
+        this.values = values;
+    }
+
+    static StaticSnapshot of(Class<?>... classes) throws IllegalAccessException {
+        Plan[] plans = new Plan[classes.length];
+        Object[][] values = new Object[classes.length][];
+        for (int i = 0; i < classes.length; i++) {
+            plans[i] = plan(classes[i]);
+            FieldHandle[] handles = plans[i].handles;
+            values[i] = new Object[handles.length];
+            for (int j = 0; j < handles.length; j++) {
+                values[i][j] = handles[j].get(null);
+            }
+        }
+        return new StaticSnapshot(plans, values);
+    }
+
+    private static Plan plan(Class<?> type) throws IllegalAccessException {
+        try {
+            return PLANS.get(type);
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IllegalAccessException illegalAccess) {
+                throw illegalAccess;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Puts the values from when the snapshot was taken back into the static fields. The snapshot can be restored any
+     * number of times.
+     *
+     * @throws IllegalAccessException if a field cannot be accessed
+     */
+    public void restore() throws IllegalAccessException {
+        for (int i = 0; i < plans.length; i++) {
+            plans[i].setter.apply(null, values[i]);
+        }
+    }
+
+    /**
+     * Lists the static fields that no longer have the value they had when the snapshot was taken. References are
+     * compared by identity and primitives by value.
+     *
+     * @return the changed fields, in the order they were copied
+     */
+    public List<Field> changed() {
+        Set<Field> changed = new LinkedHashSet<>();
+        for (int i = 0; i < plans.length; i++) {
+            FieldHandle[] handles = plans[i].handles;
+            for (int j = 0; j < handles.length; j++) {
+                Field field = handles[j].getField();
+                Object current = handles[j].get(null);
+                boolean same = field.getType().isPrimitive()
+                        ? Objects.equals(current, values[i][j])
+                        : current == values[i][j];
+                if (!same) {
+                    changed.add(field);
+                }
+            }
+        }
+        return new ArrayList<>(changed);
+    }
+
+    /**
+     * @return the number of static fields in the snapshot
+     */
+    public int size() {
+        int size = 0;
+        for (Object[] classValues : values) {
+            size += classValues.length;
+        }
+        return size;
+    }
+
+    private static final class Plan {
+        private final FieldHandle[] handles;
+        private final BulkSetter setter;
+
+        private Plan(Class<?> type) throws IllegalAccessException {
+            List<Field> fields = new ArrayList<>();
+            for (Field field : getFieldList(type)) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+                    fields.add(field);
+                }
+            }
+            this.handles = new FieldHandle[fields.size()];
+            for (int i = 0; i < handles.length; i++) {
+                handles[i] = FieldHandle.of(fields.get(i));
+            }
+            this.setter = BulkSetter.of(type, fields);
+        }
+    }
+}
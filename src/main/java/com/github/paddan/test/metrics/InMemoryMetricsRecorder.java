@@ -0,0 +1,277 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.metrics;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MetricsRecorder} that keeps everything in memory: lookup counts, cache hits, failed lookups and a latency
+ * histogram per operation, plus the time spent per class, lock waits included, which is what {@link #report()} ranks
+ * the hotspots by.
+ * <p>
+ * Latencies are kept in power of two buckets, so the percentiles in the report are upper bounds.
+ */
+public final class InMemoryMetricsRecorder implements MetricsRecorder {
+
+    private static final int HOTSPOTS = 20;
+
+    // Filled once in the constructor and never modified after that
+    private final Map<Operation, OperationStatistics> operations = new EnumMap<>(Operation.class);
+    private final ConcurrentMap<Class<?>, ClassStatistics> classes = new ConcurrentHashMap<>();
+
+    public InMemoryMetricsRecorder() {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationStatistics());
+        }
+    }
+
+    @Override
+    public void lookup(Operation operation, Class<?> type, String member, long nanos, boolean cacheHit) {
+        operations.get(operation).record(nanos, cacheHit, false);
+        classStatistics(type).lookup(nanos, false);
+    }
+
+    @Override
+    public void failedLookup(Operation operation, Class<?> type, String member, long nanos, boolean cacheHit) {
+        operations.get(operation).record(nanos, cacheHit, true);
+        classStatistics(type).lookup(nanos, true);
+    }
+
+    @Override
+    public void mockCreated(Class<?> target, Class<?> type, long nanos) {
+        classStatistics(target).mockCreated(nanos);
+    }
+
+    @Override
+    public void lockWaited(Class<?> type, long nanos) {
+        classStatistics(type).lockWaited(nanos);
+    }
+
+    /**
+     * @param operation the kind of lookup
+     * @return the number of lookups of the kind, failed lookups included
+     */
+    public long getLookups(Operation operation) {
+        return operations.get(operation).lookups.sum();
+    }
+
+    /**
+     * @param operation the kind of lookup
+     * @return the number of lookups of the kind that were answered from a cache
+     */
+    public long getCacheHits(Operation operation) {
+        return operations.get(operation).cacheHits.sum();
+    }
+
+    /**
+     * @param operation the kind of lookup
+     * @return the share of the lookups of the kind that were answered from a cache, 0 when there are no lookups
+     */
+    public double getCacheHitRatio(Operation operation) {
+        long lookups = getLookups(operation);
+        return lookups == 0 ? 0 : (double) getCacheHits(operation) / lookups;
+    }
+
+    /**
+     * @param operation the kind of lookup
+     * @return the number of lookups of the kind that didn't find anything
+     */
+    public long getFailedLookups(Operation operation) {
+        return operations.get(operation).failures.sum();
+    }
+
+    /**
+     * @param operation  the kind of lookup
+     * @param percentile the percentile, between 0 and 100
+     * @return an upper bound of the latency of the percentile in nanoseconds
+     */
+    public long getLatencyPercentile(Operation operation, double percentile) {
+        return operations.get(operation).percentile(percentile);
+    }
+
+    /**
+     * @param target the class mocks were injected into
+     * @return the total time the autoInject mock functions spent creating mocks for the class in nanoseconds
+     */
+    public long getMockCreationNanos(Class<?> target) {
+        ClassStatistics statistics = classes.get(target);
+        return statistics == null ? 0 : statistics.mockNanos.sum();
+    }
+
+    /**
+     * @param type the class whose static fields were locked in injection scopes
+     * @return the total time threads waited for the lock on the static fields of the class in nanoseconds
+     */
+    public long getLockWaitNanos(Class<?> type) {
+        ClassStatistics statistics = classes.get(type);
+        return statistics == null ? 0 : statistics.lockNanos.sum();
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        operations.values().forEach(OperationStatistics::reset);
+        classes.clear();
+    }
+
+    /**
+     * Creates a report with the statistics per operation followed by the classes that took the most time.
+     *
+     * @return the report
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder("Reflection metrics\n");
+        report.append(String.format("%-16s %10s %10s %10s %12s %12s%n",
+                "operation", "lookups", "hit ratio", "failed", "p50 (ns)", "p99 (ns)"));
+        for (Operation operation : Operation.values()) {
+            report.append(String.format("%-16s %10d %10.2f %10d %12d %12d%n", operation, getLookups(operation),
+                    getCacheHitRatio(operation), getFailedLookups(operation),
+                    getLatencyPercentile(operation, 50), getLatencyPercentile(operation, 99)));
+        }
+
+        List<Map.Entry<Class<?>, ClassStatistics>> hotspots = new ArrayList<>(classes.entrySet());
+        hotspots.sort(Comparator.comparingLong(
+                (Map.Entry<Class<?>, ClassStatistics> entry) -> entry.getValue().totalNanos()).reversed());
+        report.append(String.format("%nHotspots%n%-60s %10s %10s %14s %14s %14s%n",
+                "class", "lookups", "failed", "lookup (ns)", "mocks (ns)", "locks (ns)"));
+        for (Map.Entry<Class<?>, ClassStatistics> hotspot : hotspots.subList(0, Math.min(HOTSPOTS, hotspots.size()))) {
+            ClassStatistics statistics = hotspot.getValue();
+            report.append(String.format("%-60s %10d %10d %14d %14d %14d%n", hotspot.getKey().getName(),
+                    statistics.lookups.sum(), statistics.failures.sum(), statistics.lookupNanos.sum(),
+                    statistics.mockNanos.sum(), statistics.lockNanos.sum()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Prints the report to the given stream.
+     *
+     * @param out the stream to print to
+     */
+    public void printReport(PrintStream out) {
+        out.print(report());
+    }
+
+    /**
+     * Prints the report to standard out when the JVM shuts down, which is after the last test of a run.
+     */
+    public void printReportOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> printReport(System.out), "metrics-report"));
+    }
+
+    private ClassStatistics classStatistics(Class<?> type) {
+        return classes.computeIfAbsent(type, ignored -> new ClassStatistics());
+    }
+
+    private static final class OperationStatistics {
+        private final LongAdder lookups = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[Long.SIZE];
+
+        private OperationStatistics() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos, boolean cacheHit, boolean failed) {
+            lookups.increment();
+            if (cacheHit) {
+                cacheHits.increment();
+            }
+            if (failed) {
+                failures.increment();
+            }
+            // Bucket i holds latencies from 2^i up to 2^(i + 1) nanoseconds
+            histogram[Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(nanos, 1))].increment();
+        }
+
+        private void reset() {
+            lookups.reset();
+            cacheHits.reset();
+            failures.reset();
+            for (LongAdder bucket : histogram) {
+                bucket.reset();
+            }
+        }
+
+        private long percentile(double percentile) {
+            long[] counts = new long[histogram.length];
+            long total = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                counts[i] = histogram[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static final class ClassStatistics {
+        private final LongAdder lookups = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder lookupNanos = new LongAdder();
+        private final LongAdder mockNanos = new LongAdder();
+        private final LongAdder lockNanos = new LongAdder();
+
+        private void lookup(long nanos, boolean failed) {
+            lookups.increment();
+            if (failed) {
+                failures.increment();
+            }
+            lookupNanos.add(nanos);
+        }
+
+        private void mockCreated(long nanos) {
+            mockNanos.add(nanos);
+        }
+
+        private void lockWaited(long nanos) {
+            lockNanos.add(nanos);
+        }
+
+        private long totalNanos() {
+            return lookupNanos.sum() + mockNanos.sum() + lockNanos.sum();
+        }
+    }
+}
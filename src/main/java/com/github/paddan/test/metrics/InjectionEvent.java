@@ -0,0 +1,88 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a value written into a field by the injector. Disabled unless enabled in the recording
+ * settings.
+ */
+@Name("com.github.paddan.test.Injection")
+@Label("Injection")
+@Category("TestUtilities")
+@Description("A value written into a field")
+@Enabled(false)
+public final class InjectionEvent extends Event {
+
+    // Handed out while the event is disabled, so the hot paths don't allocate an event that is never committed
+    private static final InjectionEvent DISABLED = new InjectionEvent();
+
+    private static final EventType TYPE = EventType.getEventType(InjectionEvent.class);
+
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    @Label("Member")
+    String member;
+
+    @Label("Cache Hit")
+    @Description("The field handle had already been compiled")
+    boolean cacheHit;
+
+    /**
+     * Creates and begins an event, or returns a shared event that is never committed while the event is disabled.
+     *
+     * @return the begun event
+     */
+    public static InjectionEvent start() {
+        if (!TYPE.isEnabled()) {
+            return DISABLED;
+        }
+        InjectionEvent event = new InjectionEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event, if it is enabled and above its threshold.
+     *
+     * @param targetClass the class of the object injected into, or the declaring class for static fields
+     * @param member      the name of the field
+     * @param cacheHit    true if the field handle had already been compiled
+     */
+    public void injected(Class<?> targetClass, String member, boolean cacheHit) {
+        if (this != DISABLED && shouldCommit()) {
+            this.targetClass = targetClass;
+            this.member = member;
+            this.cacheHit = cacheHit;
+            commit();
+        }
+    }
+}
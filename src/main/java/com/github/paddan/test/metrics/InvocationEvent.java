@@ -0,0 +1,88 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a method or constructor invoked by the caller, the time spent in the member itself
+ * included. Disabled unless enabled in the recording settings.
+ */
+@Name("com.github.paddan.test.Invocation")
+@Label("Invocation")
+@Category("TestUtilities")
+@Description("A method or constructor invoked through reflection or a generated invoker")
+@Enabled(false)
+public final class InvocationEvent extends Event {
+
+    // Handed out while the event is disabled, so the hot paths don't allocate an event that is never committed
+    private static final InvocationEvent DISABLED = new InvocationEvent();
+
+    private static final EventType TYPE = EventType.getEventType(InvocationEvent.class);
+
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    @Label("Member")
+    String member;
+
+    @Label("Cache Hit")
+    @Description("The generated invoker had already been compiled")
+    boolean cacheHit;
+
+    /**
+     * Creates and begins an event, or returns a shared event that is never committed while the event is disabled.
+     *
+     * @return the begun event
+     */
+    public static InvocationEvent start() {
+        if (!TYPE.isEnabled()) {
+            return DISABLED;
+        }
+        InvocationEvent event = new InvocationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event, if it is enabled and above its threshold.
+     *
+     * @param targetClass the class the member was invoked on
+     * @param member      the name of the method, or {@code <init>} for constructors
+     * @param cacheHit    true if the generated invoker had already been compiled
+     */
+    public void invoked(Class<?> targetClass, String member, boolean cacheHit) {
+        if (this != DISABLED && shouldCommit()) {
+            this.targetClass = targetClass;
+            this.member = member;
+            this.cacheHit = cacheHit;
+            commit();
+        }
+    }
+}
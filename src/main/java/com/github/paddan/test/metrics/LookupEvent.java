@@ -0,0 +1,112 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for the resolution of a field table, a field, a method or a constructor. Disabled unless
+ * enabled in the recording settings, for example with
+ * {@code -XX:StartFlightRecording:com.github.paddan.test.Lookup#enabled=true}.
+ */
+@Name("com.github.paddan.test.Lookup")
+@Label("Reflective Lookup")
+@Category("TestUtilities")
+@Description("Resolution of a field table, a field, a method or a constructor")
+@Enabled(false)
+public final class LookupEvent extends Event {
+
+    // Handed out while the event is disabled, so the hot paths don't allocate an event that is never committed
+    private static final LookupEvent DISABLED = new LookupEvent();
+
+    private static final EventType TYPE = EventType.getEventType(LookupEvent.class);
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    @Label("Member")
+    String member;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+
+    @Label("Found")
+    boolean found;
+
+    /**
+     * Creates and begins an event, or returns a shared event that is never committed while the event is disabled.
+     *
+     * @param operation the kind of lookup
+     * @return the begun event
+     */
+    public static LookupEvent start(Operation operation) {
+        if (!TYPE.isEnabled()) {
+            return DISABLED;
+        }
+        LookupEvent event = new LookupEvent();
+        event.operation = operation.name();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event for a successful lookup, if the event is enabled and above its threshold.
+     *
+     * @param targetClass the class the lookup was made in
+     * @param member      the name of the member looked up, or null
+     * @param cacheHit    true if the lookup was answered from a cache
+     */
+    public void found(Class<?> targetClass, String member, boolean cacheHit) {
+        record(targetClass, member, cacheHit, true);
+    }
+
+    /**
+     * Commits the event for a failed lookup, if the event is enabled and above its threshold.
+     *
+     * @param targetClass the class the lookup was made in
+     * @param member      the name of the member looked up, or null
+     * @param cacheHit    true if the failure was answered from a cache
+     */
+    public void failed(Class<?> targetClass, String member, boolean cacheHit) {
+        record(targetClass, member, cacheHit, false);
+    }
+
+    private void record(Class<?> targetClass, String member, boolean cacheHit, boolean found) {
+        if (this != DISABLED && shouldCommit()) {
+            this.targetClass = targetClass;
+            this.member = member;
+            this.cacheHit = cacheHit;
+            this.found = found;
+            commit();
+        }
+    }
+}
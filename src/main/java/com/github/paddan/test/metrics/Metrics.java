@@ -0,0 +1,128 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.metrics;
+
+/**
+ * Holds the installed {@link MetricsRecorder}. Metrics are disabled until a recorder is installed, and while they are
+ * disabled the instrumented code does nothing more than check whether a recorder is installed.
+ * <p>
+ * The static methods other than {@link #install(MetricsRecorder)}, {@link #uninstall()} and {@link #isEnabled()} are
+ * the hooks the library reports through. They take the value returned by {@link #start()}, so the clock is only read
+ * when metrics are enabled.
+ */
+public final class Metrics {
+
+    private static volatile MetricsRecorder recorder;
+
+    private Metrics() {
+    }
+
+    /**
+     * Installs a recorder, replacing the one installed before.
+     *
+     * @param metricsRecorder the recorder to report to
+     */
+    public static void install(MetricsRecorder metricsRecorder) {
+        recorder = metricsRecorder;
+    }
+
+    /**
+     * Uninstalls the recorder, which disables metrics.
+     */
+    public static void uninstall() {
+        recorder = null;
+    }
+
+    /**
+     * @return true if a recorder is installed
+     */
+    public static boolean isEnabled() {
+        return recorder != null;
+    }
+
+    /**
+     * @return the start time of a measurement, or 0 when metrics are disabled
+     */
+    public static long start() {
+        return recorder == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Reports a successful lookup that started at the given time.
+     *
+     * @param operation the kind of lookup
+     * @param type      the class the lookup was made in
+     * @param member    the name of the member looked up, or null
+     * @param start     the value returned by {@link #start()}
+     * @param cacheHit  true if the lookup was answered from a cache
+     */
+    public static void lookup(Operation operation, Class<?> type, String member, long start, boolean cacheHit) {
+        MetricsRecorder metricsRecorder = recorder;
+        if (metricsRecorder != null && start != 0L) {
+            metricsRecorder.lookup(operation, type, member, System.nanoTime() - start, cacheHit);
+        }
+    }
+
+    /**
+     * Reports a failed lookup that started at the given time.
+     *
+     * @param operation the kind of lookup
+     * @param type      the class the lookup was made in
+     * @param member    the name of the member looked up, or null
+     * @param start     the value returned by {@link #start()}
+     * @param cacheHit  true if the failure was answered from a cache
+     */
+    public static void failedLookup(Operation operation, Class<?> type, String member, long start, boolean cacheHit) {
+        MetricsRecorder metricsRecorder = recorder;
+        if (metricsRecorder != null && start != 0L) {
+            metricsRecorder.failedLookup(operation, type, member, System.nanoTime() - start, cacheHit);
+        }
+    }
+
+    /**
+     * Reports a mock created by an autoInject mock function that started at the given time.
+     *
+     * @param target the class of the object the mock is injected into
+     * @param type   the type that was mocked
+     * @param start  the value returned by {@link #start()}
+     */
+    public static void mockCreated(Class<?> target, Class<?> type, long start) {
+        MetricsRecorder metricsRecorder = recorder;
+        if (metricsRecorder != null && start != 0L) {
+            metricsRecorder.mockCreated(target, type, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reports the time a thread waited for the lock on the static fields of a class, from the given time until now.
+     *
+     * @param type  the class whose static fields are locked
+     * @param start the value returned by {@link #start()}
+     */
+    public static void lockWaited(Class<?> type, long start) {
+        MetricsRecorder metricsRecorder = recorder;
+        if (metricsRecorder != null && start != 0L) {
+            metricsRecorder.lockWaited(type, System.nanoTime() - start);
+        }
+    }
+}
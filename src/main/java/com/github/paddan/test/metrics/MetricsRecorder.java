@@ -0,0 +1,74 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.metrics;
+
+/**
+ * Receives measurements of the reflective lookups made by the library. Install an implementation with
+ * {@link Metrics#install(MetricsRecorder)}; {@link InMemoryMetricsRecorder} is a ready made one.
+ * <p>
+ * Implementations are called from whichever thread makes the lookup, so they must be thread safe, and they should be
+ * cheap since they're called on every lookup.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Called after a successful lookup.
+     *
+     * @param operation the kind of lookup
+     * @param type      the class the lookup was made in
+     * @param member    the name of the member looked up, or null if the lookup isn't for a named member
+     * @param nanos     how long the lookup took
+     * @param cacheHit  true if the lookup was answered from a cache
+     */
+    void lookup(Operation operation, Class<?> type, String member, long nanos, boolean cacheHit);
+
+    /**
+     * Called after a lookup that didn't find anything.
+     *
+     * @param operation the kind of lookup
+     * @param type      the class the lookup was made in
+     * @param member    the name of the member looked up, or null if the lookup isn't for a named member
+     * @param nanos     how long the lookup took
+     * @param cacheHit  true if the failure was answered from a cache
+     */
+    void failedLookup(Operation operation, Class<?> type, String member, long nanos, boolean cacheHit);
+
+    /**
+     * Called after the mock function passed to one of the autoInject methods has created a mock.
+     *
+     * @param target the class of the object the mock is injected into
+     * @param type   the type that was mocked
+     * @param nanos  how long the mock function took
+     */
+    void mockCreated(Class<?> target, Class<?> type, long nanos);
+
+    /**
+     * Called after a thread has waited for the lock on the static fields of a class in an injection scope. Does
+     * nothing unless overridden.
+     *
+     * @param type  the class whose static fields are locked
+     * @param nanos how long the thread waited for the lock
+     */
+    default void lockWaited(Class<?> type, long nanos) {
+    }
+}
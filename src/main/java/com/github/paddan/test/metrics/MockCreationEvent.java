@@ -0,0 +1,93 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a mock created by the mock function given to autoInject. Disabled unless enabled in the
+ * recording settings.
+ */
+@Name("com.github.paddan.test.MockCreation")
+@Label("Mock Creation")
+@Category("TestUtilities")
+@Description("A mock created for autoInject")
+@Enabled(false)
+public final class MockCreationEvent extends Event {
+
+    // Handed out while the event is disabled, so the hot paths don't allocate an event that is never committed
+    private static final MockCreationEvent DISABLED = new MockCreationEvent();
+
+    private static final EventType TYPE = EventType.getEventType(MockCreationEvent.class);
+
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    @Label("Member")
+    String member;
+
+    @Label("Mocked Class")
+    Class<?> mockedClass;
+
+    @Label("Deferred")
+    @Description("The mock was created when a lazy proxy was first used rather than when it was injected")
+    boolean deferred;
+
+    /**
+     * Creates and begins an event, or returns a shared event that is never committed while the event is disabled.
+     *
+     * @return the begun event
+     */
+    public static MockCreationEvent start() {
+        if (!TYPE.isEnabled()) {
+            return DISABLED;
+        }
+        MockCreationEvent event = new MockCreationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event, if it is enabled and above its threshold.
+     *
+     * @param targetClass the class of the object the mock is injected into
+     * @param member      the name of the field the mock is injected into
+     * @param mockedClass the type that was mocked
+     * @param deferred    true if a lazy proxy created the mock on first use
+     */
+    public void created(Class<?> targetClass, String member, Class<?> mockedClass, boolean deferred) {
+        if (this != DISABLED && shouldCommit()) {
+            this.targetClass = targetClass;
+            this.member = member;
+            this.mockedClass = mockedClass;
+            this.deferred = deferred;
+            commit();
+        }
+    }
+}
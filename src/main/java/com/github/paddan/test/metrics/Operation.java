@@ -0,0 +1,49 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.metrics;
+
+/**
+ * The kinds of lookups reported to a {@link MetricsRecorder}.
+ */
+public enum Operation {
+    /**
+     * Flattening the fields of a class hierarchy in {@link com.github.paddan.test.utils.FieldHelper}.
+     */
+    FIELD_TABLE,
+    /**
+     * Finding a field by its name.
+     */
+    FIELD,
+    /**
+     * Finding a field by its annotation.
+     */
+    ANNOTATED_FIELD,
+    /**
+     * Resolving a method from its name and arguments.
+     */
+    METHOD,
+    /**
+     * Resolving a constructor from its arguments.
+     */
+    CONSTRUCTOR
+}
@@ -0,0 +1,253 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.utils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index from annotation type to the fields of a class annotated with it, in the order of
+ * {@link FieldHelper#getFieldList(Class)}. The fields of each annotation are also indexed by their type, and the first
+ * field a value of a given type can be assigned to is remembered, so annotation-driven lookups don't have to scan the
+ * field table.
+ * <p>
+ * The index of a class is built once and cached in a {@link ClassValue}. When the {@link MetadataCache} is enabled,
+ * the annotated fields are taken from it instead of reading the annotations of every field. Their annotation types
+ * are then matched by name the first time they're looked up, so a cached index doesn't load any classes.
+ */
+public final class AnnotationIndex {
+
+    private static final ClassValue<AnnotationIndex> INDEXES = new ClassValue<>() {
+        @Override
+        protected AnnotationIndex computeValue(Class<?> type) {
+            AnnotationIndex index = build(type);
+            BUILT.get()[0] = true;
+            return index;
+        }
+    };
+
+    // Tells ensureBuilt whether the index was built by the current call
+    private static final ThreadLocal<boolean[]> BUILT = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private static final Entry EMPTY = new Entry(List.of());
+
+    private final Map<Class<? extends Annotation>, Entry> entries;
+    // The annotated fields taken from the metadata cache by annotation name, and the entries matched with them so far
+    private final Map<String, List<Field>> named;
+    private final ConcurrentMap<Class<? extends Annotation>, Entry> resolved = new ConcurrentHashMap<>();
+
+    private AnnotationIndex(Map<Class<? extends Annotation>, List<Field>> annotated, Map<String, List<Field>> named) {
+        Map<Class<? extends Annotation>, Entry> built = new HashMap<>();
+        for (Map.Entry<Class<? extends Annotation>, List<Field>> entry : annotated.entrySet()) {
+            built.put(entry.getKey(), new Entry(List.copyOf(entry.getValue())));
+        }
+        entries = Map.copyOf(built);
+        this.named = named;
+    }
+
+    private static AnnotationIndex build(Class<?> type) {
+        List<Field> fields = FieldHelper.getFieldList(type);
+        Map<String, int[]> cached = MetadataCache.annotatedFields(type, fields.size());
+        if (cached != null) {
+            Map<String, List<Field>> named = fromCache(fields, cached);
+            if (named != null) {
+                return new AnnotationIndex(Map.of(), named);
+            }
+        }
+
+        Map<Class<? extends Annotation>, List<Field>> annotated = new LinkedHashMap<>();
+        Map<String, int[]> positions = new LinkedHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            for (Annotation annotation : fields.get(i).getDeclaredAnnotations()) {
+                annotated.computeIfAbsent(annotation.annotationType(), key -> new ArrayList<>()).add(fields.get(i));
+                int[] indexes = positions.get(annotation.annotationType().getName());
+                indexes = indexes == null ? new int[1] : Arrays.copyOf(indexes, indexes.length + 1);
+                indexes[indexes.length - 1] = i;
+                positions.put(annotation.annotationType().getName(), indexes);
+            }
+        }
+        MetadataCache.record(type, fields.size(), positions);
+        return new AnnotationIndex(annotated, Map.of());
+    }
+
+    /**
+     * Resolves the field positions of a cache entry, or returns null if a position is outside the field table, in
+     * which case the index is built from the fields.
+     */
+    private static Map<String, List<Field>> fromCache(List<Field> fields, Map<String, int[]> cached) {
+        Map<String, List<Field>> named = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : cached.entrySet()) {
+            List<Field> annotatedFields = new ArrayList<>(entry.getValue().length);
+            for (int index : entry.getValue()) {
+                if (index < 0 || index >= fields.size()) {
+                    return null;
+                }
+                annotatedFields.add(fields.get(index));
+            }
+            if (!annotatedFields.isEmpty()) {
+                named.put(entry.getKey(), List.copyOf(annotatedFields));
+            }
+        }
+        return Map.copyOf(named);
+    }
+
+    /**
+     * Returns the cached index of the given class, building it on first use.
+     *
+     * @param type the class to get the index for
+     * @return the index of the fields of the class, including those from superclasses
+     */
+    public static AnnotationIndex of(Class<?> type) {
+        return INDEXES.get(type);
+    }
+
+    /**
+     * Builds the index of the given class if it isn't built yet, so annotation-driven lookups can report whether they
+     * hit a cached index.
+     *
+     * @param type the class to index
+     * @return true if the index was already built, false if this call built it
+     */
+    public static boolean ensureBuilt(Class<?> type) {
+        boolean[] built = BUILT.get();
+        built[0] = false;
+        INDEXES.get(type);
+        return !built[0];
+    }
+
+    /**
+     * @param annotation the annotation to look for
+     * @return an unmodifiable list of the fields annotated with the annotation, superclass fields first
+     */
+    public List<Field> getFields(Class<? extends Annotation> annotation) {
+        return entry(annotation).fields;
+    }
+
+    /**
+     * @param annotation the annotation to look for
+     * @param fieldType  the exact type of the fields
+     * @return an unmodifiable list of the fields of the given type annotated with the annotation, superclass fields
+     * first
+     */
+    public List<Field> getFields(Class<? extends Annotation> annotation, Class<?> fieldType) {
+        List<Field> fields = entry(annotation).byType.get(fieldType);
+        return fields == null ? List.of() : fields;
+    }
+
+    /**
+     * @param annotation the annotation to look for
+     * @param fieldType  the exact type of the field
+     * @return the first field of the given type annotated with the annotation, or null if there is none
+     */
+    public Field findByType(Class<? extends Annotation> annotation, Class<?> fieldType) {
+        List<Field> fields = entry(annotation).byType.get(fieldType);
+        return fields == null ? null : fields.get(0);
+    }
+
+    /**
+     * Finds the first field annotated with the annotation that a value of the given type can be assigned to. Primitive
+     * fields only accept null here, as they aren't assignable from their wrappers.
+     *
+     * @param annotation the annotation to look for
+     * @param valueType  the type of the value, or null for a null value, which can be assigned to any field
+     * @return the first field annotated with the annotation that accepts the value, or null if there is none
+     */
+    public Field findAssignable(Class<? extends Annotation> annotation, Class<?> valueType) {
+        Entry entry = entry(annotation);
+        if (entry.fields.isEmpty()) {
+            return null;
+        }
+        if (valueType == null) {
+            return entry.fields.get(0);
+        }
+
+        Object found = entry.assignable.get(valueType);
+        if (found == null) {
+            found = Entry.NOT_ASSIGNABLE;
+            for (Field field : entry.fields) {
+                if (field.getType().isAssignableFrom(valueType)) {
+                    found = field;
+                    break;
+                }
+            }
+            if (entry.assignable.size() < Entry.MAX_REMEMBERED_TYPES) {
+                entry.assignable.putIfAbsent(valueType, found);
+            }
+        }
+        return found == Entry.NOT_ASSIGNABLE ? null : (Field) found;
+    }
+
+    private Entry entry(Class<? extends Annotation> annotation) {
+        Entry entry = entries.get(annotation);
+        if (entry != null || named.isEmpty()) {
+            return entry == null ? EMPTY : entry;
+        }
+        entry = resolved.get(annotation);
+        if (entry == null) {
+            entry = resolve(annotation);
+            resolved.putIfAbsent(annotation, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Matches an annotation type with the cached fields of its name. An annotation of the same name from another class
+     * loader isn't the one on the fields, which reading the annotation of the first field tells apart.
+     */
+    private Entry resolve(Class<? extends Annotation> annotation) {
+        List<Field> fields = named.get(annotation.getName());
+        return fields != null && fields.get(0).getDeclaredAnnotation(annotation) != null ? new Entry(fields) : EMPTY;
+    }
+
+    private static final class Entry {
+        // Bounds the value types remembered per annotation, mocks can bring a new class per test
+        private static final int MAX_REMEMBERED_TYPES = 64;
+        private static final Object NOT_ASSIGNABLE = new Object();
+
+        private final List<Field> fields;
+        private final Map<Class<?>, List<Field>> byType;
+        private final ConcurrentMap<Class<?>, Object> assignable = new ConcurrentHashMap<>();
+
+        private Entry(List<Field> fields) {
+            this.fields = fields;
+            Map<Class<?>, List<Field>> types = new LinkedHashMap<>();
+            for (Field field : fields) {
+                types.computeIfAbsent(field.getType(), type -> new ArrayList<>()).add(field);
+            }
+            Map<Class<?>, List<Field>> built = new HashMap<>();
+            for (Map.Entry<Class<?>, List<Field>> entry : types.entrySet()) {
+                built.put(entry.getKey(), List.copyOf(entry.getValue()));
+            }
+            byType = Map.copyOf(built);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+package com.github.paddan.test.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A compiled, thread safe handle to a single field. Reads go through a {@link VarHandle} resolved with
+ * {@link MethodHandles#privateLookupIn(Class, MethodHandles.Lookup)} and writes through a setter method handle, both
+ * adapted once to an erased signature so that every call is an exact invocation. Fields in packages that aren't open
+ * to this library fall back to plain method handles for fields that can be made accessible.
+ * <p>
+ * The primitive accessors, such as {@link #getInt(Object)} and {@link #setInt(Object, int)}, use handles typed for the
+ * primitive, so they neither box nor allocate. Like {@link Field#getInt(Object)} and {@link Field#setInt(Object, int)}
+ * they only work on primitive fields and only allow widening primitive conversions, anything else, including boxing,
+ * unboxing and narrowing, throws an {@link IllegalArgumentException}.
+ * <p>
+ * Handles are cached per field, use {@link #of(Field)} to get one.
+ */
+public final class FieldHandle {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final Class<?>[] PRIMITIVES = {
+            boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class
+    };
+    private static final int BOOLEAN = 0;
+    private static final int BYTE = 1;
+    private static final int CHAR = 2;
+    private static final int SHORT = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    // Position in the widening order byte, short, int, long, float, double, with char next to short
+    private static final int[] WIDENING_RANKS = {0, 1, 2, 2, 3, 4, 5, 6};
+
+    private static final ClassValue<ConcurrentMap<String, FieldHandle>> HANDLES = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<String, FieldHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Field field;
+    private final MethodHandles.Lookup lookup;
+    private final MethodHandle typedGetter;
+    private final MethodHandle getter;
+    private final MethodHandle[] primitiveGetters = new MethodHandle[PRIMITIVES.length];
+    private final MethodHandle[] primitiveSetters = new MethodHandle[PRIMITIVES.length];
+    private volatile MethodHandle typedSetter;
+    private volatile MethodHandle setter;
+
+    private FieldHandle(Field field) throws IllegalAccessException {
+        this.field = field;
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+        } catch (IllegalAccessException notOpen) {
+            // The package isn't open to us, only fields made accessible through reflection can be used
+            field.setAccessible(true);
+            lookup = MethodHandles.lookup();
+        }
+        this.lookup = lookup;
+        if (lookup.lookupClass() == field.getDeclaringClass()) {
+            VarHandle varHandle = lookup.unreflectVarHandle(field);
+            this.typedGetter = dropStaticReceiver(varHandle.toMethodHandle(VarHandle.AccessMode.GET));
+        } else {
+            this.typedGetter = dropStaticReceiver(lookup.unreflectGetter(field));
+        }
+        this.getter = typedGetter.asType(GETTER_TYPE);
+    }
+
+    /**
+     * Returns the cached handle for the given field, compiling it on first use.
+     *
+     * @param field the field to get a handle for
+     * @return the handle for the field
+     * @throws IllegalAccessException if the declaring class of the field cannot be accessed
+     */
+    public static FieldHandle of(Field field) throws IllegalAccessException {
+        ConcurrentMap<String, FieldHandle> handles = HANDLES.get(field.getDeclaringClass());
+        FieldHandle handle = handles.get(field.getName());
+        if (handle == null) {
+            FieldHandle compiled = new FieldHandle(field);
+            handle = handles.putIfAbsent(field.getName(), compiled);
+            if (handle == null) {
+                handle = compiled;
+            }
+        }
+        return handle;
+    }
+
+    /**
+     * @param field the field to check
+     * @return true if the handle for the field has already been compiled
+     */
+    public static boolean isCached(Field field) {
+        return HANDLES.get(field.getDeclaringClass()).containsKey(field.getName());
+    }
+
+    /**
+     * @return the field this handle reads and writes
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Reads the value of the field.
+     *
+     * @param from the object to read the field from, ignored for static fields
+     * @return the value of the field, primitives are boxed
+     */
+    public Object get(Object from) {
+        try {
+            return (Object) getter.invokeExact(from);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a value into the field. Final instance fields can be written, static final fields cannot.
+     *
+     * @param into  the object to write the field in, ignored for static fields
+     * @param value the value to write, primitives are unboxed
+     * @throws IllegalAccessException if the field cannot be written
+     */
+    public void set(Object into, Object value) throws IllegalAccessException {
+        if (value == null && field.getType().isPrimitive()) {
+            throw new IllegalArgumentException("Can't set primitive field " + field.getName() + " to null");
+        }
+        MethodHandle setter = setter();
+        try {
+            setter.invokeExact(into, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Reads the value of a boolean field, or of a field that can be widened to boolean, without boxing.
+     *
+     * @param from the object to read the field from, ignored for static fields
+     * @return the value of the field
+     */
+    public boolean getBoolean(Object from) {
+        try {
+            return (boolean) primitiveGetter(BOOLEAN).invokeExact(from);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Reads the value of a byte field, or of a field that can be widened to byte, without boxing.
+     *
+     * @param from the object to read the field from, ignored for static fields
+     * @return the value of the field
+     */
+    public byte getByte(Object from) {
+        try {
+            return (byte) primitiveGetter(BYTE).invokeExact(from);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Reads the value of a char field, or of a field that can be widened to char, without boxing.
+     *
+     * @param from the object to read the field from, ignored for static fields
+     * @return the value of the field
+     */
+    public char getChar(Object from) {
+        try {
+            return (char) primitiveGetter(CHAR).invokeExact(from);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Reads the value of a short field, or of a field that can be widened to short, without boxing.
+     *
+     * @param from the object to read the field from, ignored for static fields
+     * @return the value of the field
+     */
+    public short getShort(Object from) {
+        try {
+            return (short) primitiveGetter(SHORT).invokeExact(from);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Reads the value of a int field, or of a field that can be widened to int, without boxing.
+     *
+     * @param from the object to read the field from, ignored for static fields
+     * @return the value of the field
+     */
+    public int getInt(Object from) {
+        try {
+            return (int) primitiveGetter(INT).invokeExact(from);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Reads the value of a long field, or of a field that can be widened to long, without boxing.
+     *
+     * @param from the object to read the field from, ignored for static fields
+     * @return the value of the field
+     */
+    public long getLong(Object from) {
+        try {
+            return (long) primitiveGetter(LONG).invokeExact(from);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Reads the value of a float field, or of a field that can be widened to float, without boxing.
+     *
+     * @param from the object to read the field from, ignored for static fields
+     * @return the value of the field
+     */
+    public float getFloat(Object from) {
+        try {
+            return (float) primitiveGetter(FLOAT).invokeExact(from);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Reads the value of a double field, or of a field that can be widened to double, without boxing.
+     *
+     * @param from the object to read the field from, ignored for static fields
+     * @return the value of the field
+     */
+    public double getDouble(Object from) {
+        try {
+            return (double) primitiveGetter(DOUBLE).invokeExact(from);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a boolean value into a boolean field, or into a field that boolean can be widened to, without boxing.
+     *
+     * @param into  the object to write the field in, ignored for static fields
+     * @param value the value to write
+     * @throws IllegalAccessException if the field cannot be written
+     */
+    public void setBoolean(Object into, boolean value) throws IllegalAccessException {
+        MethodHandle setter = primitiveSetter(BOOLEAN);
+        try {
+            setter.invokeExact(into, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a byte value into a byte field, or into a field that byte can be widened to, without boxing.
+     *
+     * @param into  the object to write the field in, ignored for static fields
+     * @param value the value to write
+     * @throws IllegalAccessException if the field cannot be written
+     */
+    public void setByte(Object into, byte value) throws IllegalAccessException {
+        MethodHandle setter = primitiveSetter(BYTE);
+        try {
+            setter.invokeExact(into, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a char value into a char field, or into a field that char can be widened to, without boxing.
+     *
+     * @param into  the object to write the field in, ignored for static fields
+     * @param value the value to write
+     * @throws IllegalAccessException if the field cannot be written
+     */
+    public void setChar(Object into, char value) throws IllegalAccessException {
+        MethodHandle setter = primitiveSetter(CHAR);
+        try {
+            setter.invokeExact(into, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a short value into a short field, or into a field that short can be widened to, without boxing.
+     *
+     * @param into  the object to write the field in, ignored for static fields
+     * @param value the value to write
+     * @throws IllegalAccessException if the field cannot be written
+     */
+    public void setShort(Object into, short value) throws IllegalAccessException {
+        MethodHandle setter = primitiveSetter(SHORT);
+        try {
+            setter.invokeExact(into, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a int value into a int field, or into a field that int can be widened to, without boxing.
+     *
+     * @param into  the object to write the field in, ignored for static fields
+     * @param value the value to write
+     * @throws IllegalAccessException if the field cannot be written
+     */
+    public void setInt(Object into, int value) throws IllegalAccessException {
+        MethodHandle setter = primitiveSetter(INT);
+        try {
+            setter.invokeExact(into, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a long value into a long field, or into a field that long can be widened to, without boxing.
+     *
+     * @param into  the object to write the field in, ignored for static fields
+     * @param value the value to write
+     * @throws IllegalAccessException if the field cannot be written
+     */
+    public void setLong(Object into, long value) throws IllegalAccessException {
+        MethodHandle setter = primitiveSetter(LONG);
+        try {
+            setter.invokeExact(into, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a float value into a float field, or into a field that float can be widened to, without boxing.
+     *
+     * @param into  the object to write the field in, ignored for static fields
+     * @param value the value to write
+     * @throws IllegalAccessException if the field cannot be written
+     */
+    public void setFloat(Object into, float value) throws IllegalAccessException {
+        MethodHandle setter = primitiveSetter(FLOAT);
+        try {
+            setter.invokeExact(into, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a double value into a double field, or into a field that double can be widened to, without boxing.
+     *
+     * @param into  the object to write the field in, ignored for static fields
+     * @param value the value to write
+     * @throws IllegalAccessException if the field cannot be written
+     */
+    public void setDouble(Object into, double value) throws IllegalAccessException {
+        MethodHandle setter = primitiveSetter(DOUBLE);
+        try {
+            setter.invokeExact(into, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private MethodHandle typedSetter() throws IllegalAccessException {
+        MethodHandle typedSetter = this.typedSetter;
+        if (typedSetter == null) {
+            // A VarHandle never allows writes to final fields, a setter from an accessible field does.
+            field.trySetAccessible();
+            typedSetter = dropStaticReceiver(lookup.unreflectSetter(field));
+            this.typedSetter = typedSetter;
+        }
+        return typedSetter;
+    }
+
+    private MethodHandle setter() throws IllegalAccessException {
+        MethodHandle setter = this.setter;
+        if (setter == null) {
+            setter = typedSetter().asType(SETTER_TYPE);
+            this.setter = setter;
+        }
+        return setter;
+    }
+
+    // Method handles are immutable, so the lazily adapted primitive handles can be shared without synchronization.
+
+    private MethodHandle primitiveGetter(int kind) {
+        MethodHandle handle = primitiveGetters[kind];
+        if (handle == null) {
+            MethodType type = MethodType.methodType(PRIMITIVES[kind], Object.class);
+            checkWidening(field.getType(), PRIMITIVES[kind], type);
+            handle = adapt(typedGetter, type);
+            primitiveGetters[kind] = handle;
+        }
+        return handle;
+    }
+
+    private MethodHandle primitiveSetter(int kind) throws IllegalAccessException {
+        MethodHandle handle = primitiveSetters[kind];
+        if (handle == null) {
+            MethodType type = MethodType.methodType(void.class, Object.class, PRIMITIVES[kind]);
+            checkWidening(PRIMITIVES[kind], field.getType(), type);
+            handle = adapt(typedSetter(), type);
+            primitiveSetters[kind] = handle;
+        }
+        return handle;
+    }
+
+    /**
+     * Rejects the conversions {@link MethodHandle#asType(MethodType)} allows but {@link Field} doesn't, boxing,
+     * unboxing and reference casts, leaving asType to do the widening.
+     */
+    private void checkWidening(Class<?> from, Class<?> to, MethodType type) {
+        if (!widens(from, to)) {
+            throw new IllegalArgumentException("Field " + field.getName() + " of type " + field.getType().getName()
+                    + " can't be accessed as " + type);
+        }
+    }
+
+    private static boolean widens(Class<?> from, Class<?> to) {
+        if (from == to) {
+            return from.isPrimitive();
+        }
+        if (!from.isPrimitive() || !to.isPrimitive() || from == boolean.class || to == boolean.class
+                || to == char.class) {
+            return false;
+        }
+        return WIDENING_RANKS[indexOf(from)] < WIDENING_RANKS[indexOf(to)];
+    }
+
+    private static int indexOf(Class<?> primitive) {
+        for (int i = 0; i < PRIMITIVES.length; i++) {
+            if (PRIMITIVES[i] == primitive) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(primitive.getName());
+    }
+
+    private MethodHandle adapt(MethodHandle handle, MethodType type) {
+        try {
+            return handle.asType(type);
+        } catch (WrongMethodTypeException e) {
+            throw new IllegalArgumentException("Field " + field.getName() + " of type " + field.getType().getName()
+                    + " can't be accessed as " + type, e);
+        }
+    }
+
+    private MethodHandle dropStaticReceiver(MethodHandle handle) {
+        if (Modifier.isStatic(field.getModifiers())) {
+            return MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return handle;
+    }
+
+    private RuntimeException rethrow(Throwable t) {
+        if (t instanceof ClassCastException) {
+            return new IllegalArgumentException("Can't access field " + field.getName() + " of "
+                    + field.getDeclaringClass().getName(), t);
+        }
+        if (t instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (t instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -22,19 +22,52 @@
 
 package com.github.paddan.test.utils;
 
+import com.github.paddan.test.metrics.LookupEvent;
+import com.github.paddan.test.metrics.Metrics;
+import com.github.paddan.test.metrics.Operation;
+
 import java.lang.reflect.Field;
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provides utility methods for working with Java reflection and class fields.
  *
  * The {@link #getFields(Class)} method retrieves all fields, including those from
  * superclasses, for the given class.
+ * <p>
+ * The flattened field table of a class is built once and cached in a {@link ClassValue}. The cache is attached to the
+ * class itself, so it never keeps a class or its class loader reachable on its own.
+ * <p>
+ * Fields are found by name through {@link #findField(Class, String)}, which is what the accessor and the injector use.
+ * An unqualified name refers to the field declared in the most derived class, the same field the name refers to in
+ * the code of that class. Fields hidden by a subclass are selected by qualifying the name with the declaring class,
+ * using its simple, binary or canonical name, as in {@code Base.id} or {@code com.example.Base.id}.
  */
 public final class FieldHelper {
 
+    private static final ClassValue<List<Field>> FIELDS = new ClassValue<>() {
+        @Override
+        protected List<Field> computeValue(Class<?> type) {
+            BUILT.get()[0] = true;
+            return buildFields(type);
+        }
+    };
+
+    private static final ClassValue<Map<String, Field>> NAMES = new ClassValue<>() {
+        @Override
+        protected Map<String, Field> computeValue(Class<?> type) {
+            Map<String, Field> names = buildNames(type);
+            BUILT.get()[0] = true;
+            return names;
+        }
+    };
+
+    // Tells getFieldList and ensureNamesIndexed whether the table or index was built by the current call, only used when
+    // metrics or events are enabled
+    private static final ThreadLocal<boolean[]> BUILT = ThreadLocal.withInitial(() -> new boolean[1]);
+
     private FieldHelper() {
     }
 
@@ -45,15 +78,86 @@ public final class FieldHelper {
      * @return an array of all fields, including those from superclasses, for the given class
      */
     public static Field[] getFields(Class<?> thisClass) {
-        Field[] fields = thisClass.getDeclaredFields();
-        Class<?> superClass = thisClass.getSuperclass();
+        return FIELDS.get(thisClass).toArray(new Field[0]);
+    }
 
-        if (superClass != Object.class) {
-            List<Field> superClassFields = new LinkedList<>(Arrays.asList(getFields(superClass)));
-            superClassFields.addAll(Arrays.asList(fields));
-            return superClassFields.toArray(new Field[0]);
+    /**
+     * Retrieves all fields, including those from superclasses, for the given class as a cached, unmodifiable list.
+     * Superclass fields come first, followed by the fields declared in each subclass. Unlike {@link #getFields(Class)}
+     * this doesn't copy the table, which makes it the preferred way to iterate the fields in hot paths.
+     *
+     * @param thisClass the class to get the fields for
+     * @return an unmodifiable list of all fields, including those from superclasses, for the given class
+     */
+    public static List<Field> getFieldList(Class<?> thisClass) {
+        long start = Metrics.start();
+        LookupEvent event = LookupEvent.start(Operation.FIELD_TABLE);
+        if (start == 0L && !event.isEnabled()) {
+            return FIELDS.get(thisClass);
         }
 
+        boolean[] built = BUILT.get();
+        built[0] = false;
+        List<Field> fields = FIELDS.get(thisClass);
+        Metrics.lookup(Operation.FIELD_TABLE, thisClass, null, start, !built[0]);
+        event.found(thisClass, null, !built[0]);
         return fields;
     }
+
+    /**
+     * Finds a field by its name or by its name qualified with the declaring class, see the class documentation for how
+     * hidden fields are resolved. The names of a class are indexed on first use, so no exceptions are involved in a
+     * lookup.
+     *
+     * @param in   the class to find the field in, superclasses included
+     * @param name the name of the field, optionally prefixed by the name of the declaring class and a dot
+     * @return the field, or null if there is no field with the name
+     */
+    public static Field findField(Class<?> in, String name) {
+        return NAMES.get(in).get(name);
+    }
+
+    /**
+     * Builds the name index used by {@link #findField(Class, String)} if it isn't built yet, so lookups by name can
+     * report whether they hit a cached index.
+     *
+     * @param in the class to index
+     * @return true if the index was already built, false if this call built it
+     */
+    public static boolean ensureNamesIndexed(Class<?> in) {
+        boolean[] built = BUILT.get();
+        built[0] = false;
+        NAMES.get(in);
+        return !built[0];
+    }
+
+    private static Map<String, Field> buildNames(Class<?> thisClass) {
+        Map<String, Field> names = new HashMap<>();
+        // Superclass fields come first in the table, so the most derived declaration of a name is put last and wins
+        for (Field field : getFieldList(thisClass)) {
+            Class<?> owner = field.getDeclaringClass();
+            names.put(field.getName(), field);
+            names.put(owner.getSimpleName() + "." + field.getName(), field);
+            names.put(owner.getName() + "." + field.getName(), field);
+            if (owner.getCanonicalName() != null) {
+                names.put(owner.getCanonicalName() + "." + field.getName(), field);
+            }
+        }
+        return Map.copyOf(names);
+    }
+
+    private static List<Field> buildFields(Class<?> thisClass) {
+        Field[] declared = thisClass.getDeclaredFields();
+        Class<?> superClass = thisClass.getSuperclass();
+
+        if (superClass == null || superClass == Object.class) {
+            return List.of(declared);
+        }
+
+        // The superclass table is cached as well, so each level of the hierarchy is only copied once.
+        List<Field> superClassFields = FIELDS.get(superClass);
+        Field[] fields = superClassFields.toArray(new Field[superClassFields.size() + declared.length]);
+        System.arraycopy(declared, 0, fields, superClassFields.size(), declared.length);
+        return List.of(fields);
+    }
 }
@@ -0,0 +1,425 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional cache file that keeps the annotation metadata of classes between JVMs, so forked test JVMs don't have to
+ * read the annotations of every field again. It is off by default and turned on with {@link #enable(Path)}, or by
+ * setting the system property {@value #PROPERTY} to the path of the file.
+ * <p>
+ * The file is memory-mapped when the cache is enabled, and only the names and positions of its entries are read up
+ * front. On Windows, where a mapped file can't be replaced, it's read into memory instead. An entry records which
+ * fields of the table of {@link FieldHelper#getFieldList(Class)} carry which annotations, and is valid as long as the
+ * class files of the class and its superclasses are unchanged, which is checked with their locations and
+ * last-modified times rather than their contents, so checking an entry costs a few file system lookups. Classes
+ * without an entry or with a stale or unreadable one are indexed as usual and their new entries are written back by
+ * {@link #flush()}, which also runs when the JVM exits, so only the classes that changed are rebuilt.
+ * <p>
+ * Field tables and dispatch tables hold reflection objects, which only exist in the JVM that made them, so they are
+ * rebuilt from the class in every JVM. The annotations are the part of the metadata that can be described by name.
+ */
+public final class MetadataCache {
+
+    /**
+     * The system property that enables the cache, its value is the path of the cache file.
+     */
+    public static final String PROPERTY = "testutilities.metadataCache";
+
+    private static final int MAGIC = 0x54554d43;
+    private static final int VERSION = 2;
+
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+    private static final LongAdder HITS = new LongAdder();
+
+    // Computed once per class, a lookup and a record of the same class check the class files only once
+    private static final ClassValue<Long> STAMPS = new ClassValue<>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            return stamp(type);
+        }
+    };
+
+    private static volatile MetadataCache cache;
+
+    static {
+        String path = System.getProperty(PROPERTY);
+        if (path != null && !path.isEmpty()) {
+            enable(Paths.get(path));
+        }
+    }
+
+    private final Path file;
+    private final ByteBuffer mapped;
+    private final Map<String, Integer> offsets;
+    private final ConcurrentMap<String, byte[]> updated = new ConcurrentHashMap<>();
+
+    private MetadataCache(Path file, ByteBuffer mapped, Map<String, Integer> offsets) {
+        this.file = file;
+        this.mapped = mapped;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Enables the cache, mapping the file if it exists. A missing, unreadable or incompatible file is treated as
+     * empty and replaced when the cache is flushed.
+     *
+     * @param file the cache file
+     */
+    public static synchronized void enable(Path file) {
+        boolean first = cache == null;
+        cache = open(file);
+        if (first) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    flush();
+                } catch (UncheckedIOException ignored) {
+                    // The cache is only an optimization, the next JVM rebuilds what couldn't be written
+                }
+            }, "metadata-cache-flush"));
+        }
+    }
+
+    /**
+     * Disables the cache without writing the entries that were added since it was enabled.
+     */
+    public static synchronized void disable() {
+        cache = null;
+    }
+
+    /**
+     * @return true if the cache is enabled
+     */
+    public static boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * @return the number of classes whose annotation metadata was taken from the cache file
+     */
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    /**
+     * Writes the cache file if entries were added or replaced since it was mapped. Entries of classes that weren't
+     * used by this JVM are kept.
+     *
+     * @throws UncheckedIOException if the file couldn't be written
+     */
+    public static synchronized void flush() {
+        MetadataCache current = cache;
+        if (current == null || current.updated.isEmpty()) {
+            return;
+        }
+        Map<String, byte[]> written = new HashMap<>(current.updated);
+        try {
+            current.write(written);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't write metadata cache " + current.file, e);
+        }
+        MetadataCache reopened = open(current.file);
+        // Keep what was recorded while the file was written for the next flush
+        current.updated.forEach((name, entry) -> {
+            if (written.get(name) != entry) {
+                reopened.updated.put(name, entry);
+            }
+        });
+        if (cache == current) {
+            cache = reopened;
+        }
+    }
+
+    /**
+     * Returns the cached annotations of the fields of a class.
+     *
+     * @param type       the class
+     * @param fieldCount the number of fields in the field table of the class
+     * @return the names of the annotation types mapped to the positions of the fields annotated with them in the field
+     * table, or null if the cache is disabled or has no valid entry for the class
+     */
+    static Map<String, int[]> annotatedFields(Class<?> type, int fieldCount) {
+        MetadataCache current = cache;
+        if (current == null) {
+            return null;
+        }
+        Integer offset = current.offsets.get(type.getName());
+        if (offset == null) {
+            return null;
+        }
+        long stamp = STAMPS.get(type);
+        Map<String, int[]> annotated = stamp == 0L ? null : current.read(offset, stamp, fieldCount);
+        if (annotated != null) {
+            HITS.increment();
+        }
+        return annotated;
+    }
+
+    /**
+     * Records the annotations of the fields of a class, to be written by the next {@link #flush()}.
+     *
+     * @param type       the class
+     * @param fieldCount the number of fields in the field table of the class
+     * @param annotated  the names of the annotation types mapped to the positions of the fields annotated with them
+     */
+    static void record(Class<?> type, int fieldCount, Map<String, int[]> annotated) {
+        MetadataCache current = cache;
+        if (current == null) {
+            return;
+        }
+        long stamp = STAMPS.get(type);
+        if (stamp != 0L) {
+            current.updated.put(type.getName(), encode(type.getName(), stamp, fieldCount, annotated));
+        }
+    }
+
+    private static MetadataCache open(Path file) {
+        if (Files.isRegularFile(file)) {
+            try {
+                ByteBuffer mapped = WINDOWS ? ByteBuffer.wrap(Files.readAllBytes(file)) : map(file);
+                Map<String, Integer> offsets = index(mapped);
+                if (offsets != null) {
+                    return new MetadataCache(file, mapped, offsets);
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // Unreadable or corrupt, start over with an empty cache
+            }
+        }
+        return new MetadataCache(file, ByteBuffer.allocate(0), Map.of());
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Reads the names and positions of the entries, or returns null if the file isn't a cache file written by this
+     * version for this JVM.
+     */
+    private static Map<String, Integer> index(ByteBuffer buffer) {
+        if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return null;
+        }
+        int position = 8;
+        String runtime = readString(buffer, position);
+        if (!Runtime.version().toString().equals(runtime)) {
+            return null;
+        }
+        position += 4 + buffer.getInt(position);
+        Map<String, Integer> offsets = new HashMap<>();
+        while (position < buffer.limit()) {
+            int length = length(buffer, position, 1);
+            offsets.put(readString(buffer, position + 4), position);
+            position += 4 + length;
+        }
+        return offsets;
+    }
+
+    /**
+     * Reads an entry, or returns null if it's stale or doesn't fit in its recorded length, which makes the class be
+     * indexed again.
+     */
+    private Map<String, int[]> read(int offset, long stamp, int fieldCount) {
+        try {
+            ByteBuffer entry = mapped.slice(offset + 4, length(mapped, offset, 1));
+            int position = 4 + length(entry, 0, 1);
+            if (entry.getLong(position) != stamp || entry.getInt(position + 8) != fieldCount) {
+                return null;
+            }
+            position += 12;
+            int annotations = entry.getInt(position);
+            position += 4;
+            Map<String, int[]> annotated = new LinkedHashMap<>();
+            for (int i = 0; i < annotations; i++) {
+                String name = readString(entry, position);
+                position += 4 + entry.getInt(position);
+                int[] fields = new int[length(entry, position, 4)];
+                position += 4;
+                for (int j = 0; j < fields.length; j++) {
+                    fields[j] = entry.getInt(position);
+                    position += 4;
+                }
+                annotated.put(name, fields);
+            }
+            return annotated;
+        } catch (IndexOutOfBoundsException corrupt) {
+            return null;
+        }
+    }
+
+    private void write(Map<String, byte[]> written) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, Runtime.version().toString());
+        for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+            if (!written.containsKey(entry.getKey())) {
+                int offset = entry.getValue();
+                byte[] unchanged = new byte[4 + mapped.getInt(offset)];
+                mapped.get(offset, unchanged);
+                out.write(unchanged);
+            }
+        }
+        for (byte[] entry : written.values()) {
+            out.write(entry);
+        }
+        out.flush();
+
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        // Readers never see a partly written file. On POSIX file systems the mappings of the old file stay valid, on
+        // Windows a file that's mapped or open can't be replaced, which is why it's never mapped there, and a move
+        // that fails because another JVM is reading the file leaves the entries to be written by a later flush
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, bytes.toByteArray());
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static byte[] encode(String name, long stamp, int fieldCount, Map<String, int[]> annotated) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeString(out, name);
+            out.writeLong(stamp);
+            out.writeInt(fieldCount);
+            out.writeInt(annotated.size());
+            for (Map.Entry<String, int[]> entry : annotated.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for (int field : entry.getValue()) {
+                    out.writeInt(field);
+                }
+            }
+            out.flush();
+            byte[] body = bytes.toByteArray();
+            ByteBuffer entry = ByteBuffer.allocate(4 + body.length);
+            entry.putInt(body.length).put(body);
+            return entry.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[length(buffer, position, 1)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the length at the position, a count of elements of the given size that follow it.
+     *
+     * @throws IndexOutOfBoundsException if the elements don't fit in the buffer
+     */
+    private static int length(ByteBuffer buffer, int position, int size) {
+        int length = buffer.getInt(position);
+        if (length < 0 || length > (buffer.limit() - position - 4) / size) {
+            throw new IndexOutOfBoundsException("Length " + length + " at " + position + " overruns the cache file");
+        }
+        return length;
+    }
+
+    /**
+     * Combines the locations and last-modified times of the class files of a class and its superclasses, stopping at
+     * the classes of the JDK, which are covered by the runtime version in the header. Classes in a jar use the time
+     * of the jar. Returns 0 if a class file isn't on the file system, hidden and generated classes have none, which
+     * leaves the class out of the cache.
+     */
+    private static long stamp(Class<?> type) {
+        long stamp = 1;
+        for (Class<?> current = type; current != null && !isPlatformClass(current); current = current.getSuperclass()) {
+            if (current.isHidden()) {
+                return 0L;
+            }
+            String name = current.getName();
+            URL location = current.getResource(name.substring(name.lastIndexOf('.') + 1) + ".class");
+            try {
+                if (location != null && location.getProtocol().equals("jar")) {
+                    // Parses the URL of the jar without opening it
+                    location = ((JarURLConnection) location.openConnection()).getJarFileURL();
+                }
+                if (location == null || !location.getProtocol().equals("file")) {
+                    return 0L;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(Paths.get(location.toURI()),
+                        BasicFileAttributes.class);
+                stamp = 31 * stamp + location.toString().hashCode();
+                stamp = 31 * stamp + attributes.lastModifiedTime().toMillis();
+                stamp = 31 * stamp + attributes.size();
+            } catch (IOException | URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+                return 0L;
+            }
+        }
+        return stamp == 0L ? 1L : stamp;
+    }
+
+    private static boolean isPlatformClass(Class<?> type) {
+        ClassLoader loader = type.getClassLoader();
+        return loader == null || loader == ClassLoader.getPlatformClassLoader();
+    }
+}
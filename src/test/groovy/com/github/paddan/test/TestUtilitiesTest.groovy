@@ -0,0 +1,51 @@
+package com.github.paddan.test
+
+import com.github.paddan.test.injection.test_classes.InjectTarget
+import com.github.paddan.test.metrics.InMemoryMetricsRecorder
+import com.github.paddan.test.metrics.Metrics
+import com.github.paddan.test.metrics.Operation
+import com.github.paddan.test.utils.FieldHelper
+import com.github.paddan.test.warmup.WarmUpTarget
+import spock.lang.Specification
+
+import java.util.concurrent.ForkJoinPool
+
+class TestUtilitiesTest extends Specification {
+
+    def "Should warm up every class in a package"() {
+        setup:
+        def recorder = new InMemoryMetricsRecorder()
+
+        when:
+        def warmed = TestUtilities.warmUp(WarmUpTarget.package.name)
+        Metrics.install(recorder)
+        FieldHelper.getFieldList(WarmUpTarget)
+
+        then:
+        warmed == 1
+        recorder.getLookups(Operation.FIELD_TABLE) == 1
+        recorder.getCacheHits(Operation.FIELD_TABLE) == 1
+
+        cleanup:
+        Metrics.uninstall()
+    }
+
+    def "Should warm up on the given pool"() {
+        setup:
+        def pool = new ForkJoinPool(2)
+
+        when:
+        def warmed = TestUtilities.warmUp(InjectTarget.package.name, pool)
+
+        then:
+        warmed > 0
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def "Should warm up nothing in a missing package"() {
+        expect:
+        TestUtilities.warmUp("com.github.paddan.test.missing") == 0
+    }
+}
@@ -1,9 +1,17 @@
 package com.github.paddan.test.access
 
 import com.github.paddan.test.annotations.MyFirstAnnotation
+import com.github.paddan.test.utils.HidingTarget
 import spock.lang.Specification
 
+import java.lang.ref.WeakReference
+
+import static com.github.paddan.test.access.Accessor.compile
 import static com.github.paddan.test.access.Accessor.get
+import static com.github.paddan.test.access.Accessor.getInt
+import static com.github.paddan.test.access.Accessor.getLong
+import static com.github.paddan.test.access.Accessor.path
+import static com.github.paddan.test.access.Accessor.snapshot
 
 class AccessorTest extends Specification {
     def "Should retrieve a private field"() {
@@ -49,4 +57,155 @@ class AccessorTest extends Specification {
         then:
         field == "This is annotated!"
     }
+
+    def "Should retrieve a private field using a compiled accessor"() {
+        setup:
+        PrivateClass privateClass = new PrivateClass()
+
+        when:
+        def accessor = compile("privateField", PrivateClass, String)
+
+        then:
+        accessor.get(privateClass) == "this is private"
+        accessor.get(new PrivateClass()) == "this is private"
+    }
+
+    def "Should retrieve a private field using a compiled accessor and annotation"() {
+        setup:
+        PrivateClass privateClass = new PrivateClass()
+
+        when:
+        def accessor = compile(MyFirstAnnotation, String, PrivateClass)
+
+        then:
+        accessor.get(privateClass) == "This is annotated!"
+    }
+
+    def "Should not compile an accessor for a field of another type"() {
+        when:
+        compile("privateField", PrivateClass, Integer)
+
+        then:
+        thrown IllegalArgumentException
+    }
+
+    def "Should retrieve a private primitive field without boxing"() {
+        setup:
+        PrivateClass privateClass = new PrivateClass()
+
+        expect:
+        getInt("counter", privateClass) == 42
+        getLong("counter", privateClass) == 42L
+        compile("counter", PrivateClass, Integer).getInt(privateClass) == 42
+    }
+
+    def "Should not retrieve a primitive field as a narrower type"() {
+        when:
+        Accessor.getShort("counter", new PrivateClass())
+
+        then:
+        thrown IllegalArgumentException
+    }
+
+    def "Should take a snapshot of all fields"() {
+        setup:
+        PrivateClass privateClass = new PrivateClass()
+
+        when:
+        def snapshot = snapshot(privateClass)
+
+        then:
+        snapshot.size() == 3
+        snapshot.get("privateField") == "this is private"
+        snapshot.get("annotatedField") == "This is annotated!"
+        snapshot.get(snapshot.indexOf("counter")) == 42
+        snapshot.getName(0) == "privateField"
+    }
+
+    def "Should throw exception when a snapshot field is missing"() {
+        when:
+        snapshot(new PrivateClass()).get("invalid name")
+
+        then:
+        thrown IllegalArgumentException
+    }
+
+    def "Should read the most derived of two fields with the same name unless qualified"() {
+        setup:
+        def target = new HidingTarget()
+
+        expect:
+        get("id").from(target) == "derived"
+        get("HiddenFieldBase.id").from(target) == "base"
+    }
+
+    def "Should retrieve a private field through a path"() {
+        setup:
+        def target = new PathTarget()
+
+        expect:
+        path("inner.privateField").from(target) == "this is private"
+        path("instance.inner.counter").from(PathTarget) == 42
+    }
+
+    def "Should follow a path through fields of varying runtime types"() {
+        setup:
+        def withPrivateClass = new PathTarget()
+        def withHidingTarget = new PathTarget()
+        set(withPrivateClass, "any", new PrivateClass())
+        set(withHidingTarget, "any", new HidingTarget())
+
+        expect:
+        path("any.privateField").from(withPrivateClass) == "this is private"
+        path("any.id").from(withHidingTarget) == "derived"
+    }
+
+    def "Should reuse a parsed path"() {
+        expect:
+        path("inner.privateField").is(path("inner.privateField"))
+    }
+
+    def "Should not keep the classes a path was followed through reachable"() {
+        when:
+        def followed = followInDiscardedLoader("instance.inner.counter")
+        for (int i = 0; i < 50 && followed.get() != null; i++) {
+            System.gc()
+            Thread.sleep(20)
+        }
+
+        then:
+        followed.get() == null
+    }
+
+    def "Should throw exception when a path goes through a null field"() {
+        when:
+        path("next.inner").from(new PathTarget())
+
+        then:
+        def e = thrown IllegalArgumentException
+        e.message == "Couldn't follow path next.inner, next is null"
+    }
+
+    def "Should throw exception when a path has an empty field name"() {
+        when:
+        path("inner..privateField")
+
+        then:
+        thrown IllegalArgumentException
+    }
+
+    private static void set(Object into, String name, Object value) {
+        def field = into.class.getDeclaredField(name)
+        field.accessible = true
+        field.set(into, value)
+    }
+
+    private static WeakReference<Class<?>> followInDiscardedLoader(String text) {
+        def location = PathTarget.protectionDomain.codeSource.location
+        new URLClassLoader([location] as URL[], (ClassLoader) null).withCloseable { loader ->
+            def type = loader.loadClass(PathTarget.name)
+            assert path(text).from(type) == 42
+            new WeakReference<Class<?>>(type)
+        }
+    }
 }
@@ -32,4 +32,7 @@ public class PrivateClass {
     @SuppressWarnings("unused")
     @MyFirstAnnotation
     private String annotatedField = "This is annotated!";
+
+    @SuppressWarnings("unused")
+    private int counter = 42;
 }
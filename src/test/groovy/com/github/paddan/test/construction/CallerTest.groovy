@@ -5,6 +5,10 @@ import spock.lang.Specification
 import static com.github.paddan.test.construction.Caller.callMethod
 import static com.github.paddan.test.construction.Caller.callStatic
 import static com.github.paddan.test.construction.Caller.construct
+import static com.github.paddan.test.construction.Caller.getResolutionCacheHits
+import static com.github.paddan.test.construction.Caller.getResolutionCacheMisses
+import static com.github.paddan.test.construction.Caller.resetResolutionCacheStatistics
+import static com.github.paddan.test.construction.Caller.useGeneratedInvokers
 
 class CallerTest extends Specification {
 
@@ -111,4 +115,217 @@ class CallerTest extends Specification {
         then:
         result == null
     }
+
+    def "Should create object using generated invokers"() {
+        setup:
+        useGeneratedInvokers(true)
+
+        when:
+        def object = construct(PrivateClass, "flirp", 10L)
+
+        then:
+        object instanceof PrivateClass
+        object.number == 10L
+        object.string == "flirp"
+
+        cleanup:
+        useGeneratedInvokers(false)
+    }
+
+    def "Should call private methods using generated invokers"() {
+        setup:
+        useGeneratedInvokers(true)
+        def object = construct(PrimitiveClass, 3)
+
+        expect:
+        callMethod(object, "echoInt", 7) == 7
+        callStatic(PrivateClass, "returnStringFromStatic", "Blaj") == "Blaj"
+        callStatic(PrivateClass, "returnStringFromStatic") == "hej"
+
+        cleanup:
+        useGeneratedInvokers(false)
+    }
+
+    def "Should resolve repeated calls from the resolution cache"() {
+        setup:
+        def object = construct(PrivateClass, "flirp", 10L)
+        callMethod(object, "returnStringFromPrivate", "Blaj")
+        resetResolutionCacheStatistics()
+
+        when:
+        def string = callMethod(object, "returnStringFromPrivate", "Blaj")
+
+        then:
+        string == "Blaj"
+        getResolutionCacheHits() == 1
+        getResolutionCacheMisses() == 0
+    }
+
+    def "Should fail repeated lookups of missing methods from the resolution cache"() {
+        setup:
+        def object = construct(PrivateClass)
+        try {
+            callMethod(object, "missingMethod", "Blaj")
+        } catch (IllegalArgumentException ignored) {
+        }
+        resetResolutionCacheStatistics()
+
+        when:
+        callMethod(object, "missingMethod", "Blaj")
+
+        then:
+        thrown IllegalArgumentException
+        getResolutionCacheHits() == 1
+        getResolutionCacheMisses() == 0
+    }
+
+    def "Should call private methods with up to four arguments without an argument array"() {
+        setup:
+        def object = Caller.construct(PrivateClass, (Object) "flirp", (Object) 10L)
+
+        expect:
+        object.string == "flirp"
+        Caller.callMethod(object, "getPrivateString") == "flirp"
+        Caller.callMethod(object, "returnStringFromPrivate", (Object) "Blaj") == "Blaj"
+        Caller.callStatic(PrivateClass, "join", "a", "b", "c", "d") == "abcd"
+    }
+
+    def "Should call reflectively with up to four arguments when generated invokers are off"() {
+        setup:
+        useGeneratedInvokers(false)
+
+        when:
+        def object = Caller.construct(NullableClass, (Object) "flirp")
+        def echo = Caller.callMethod(object, "echo", (Object) "Blaj")
+
+        then:
+        object.value == "flirp"
+        echo == "Blaj"
+        !Invokers.isCached(NullableClass.getDeclaredConstructor(String))
+        !Invokers.isCached(NullableClass.getDeclaredMethod("echo", String))
+    }
+
+    def "Should call through the varargs method when the arguments are an array"() {
+        expect:
+        Caller.callStatic(PrivateClass, "join", ["a", "b", "c", "d"] as Object[]) == "abcd"
+    }
+
+    def "Should resolve repeated fixed arity calls from the resolution cache"() {
+        setup:
+        Caller.callStatic(PrivateClass, "join", "a", "b", "c", "d")
+        resetResolutionCacheStatistics()
+
+        when:
+        def string = Caller.callStatic(PrivateClass, "join", "e", "f", "g", "h")
+
+        then:
+        string == "efgh"
+        getResolutionCacheHits() == 1
+        getResolutionCacheMisses() == 0
+    }
+
+    def "Should call the most specific overload"() {
+        setup:
+        def object = construct(OverloadedClass)
+
+        expect:
+        callMethod(object, "describe", argument) == overload
+
+        where:
+        argument            | overload
+        "flirp"             | "String"
+        new StringBuilder() | "CharSequence"
+        10                  | "int"
+        10L                 | "long"
+        (short) 10          | "int"
+        10.0d               | "Object"
+    }
+
+    def "Should widen primitive arguments"() {
+        setup:
+        def object = construct(OverloadedClass)
+
+        expect:
+        callMethod(object, "widen", argument) == result
+
+        where:
+        argument       | result
+        10             | "long 10"
+        (char) 'a'     | "long 97"
+        1.5f           | "double 1.5"
+    }
+
+    def "Should widen primitive arguments with generated invokers"() {
+        setup:
+        useGeneratedInvokers(true)
+        def object = construct(OverloadedClass)
+
+        when:
+        def result = callMethod(object, "widen", [10] as Object[])
+
+        then:
+        result == "long 10"
+
+        cleanup:
+        useGeneratedInvokers(false)
+    }
+
+    def "Should collect trailing arguments of variable arity calls"() {
+        expect:
+        callStatic(OverloadedClass, "format", "%s", "a", "b") == "String... 2"
+        callStatic(OverloadedClass, "format", "%s", "a", 1) == "Object... 2"
+        callStatic(OverloadedClass, "format", "%s") == "String... 0"
+        callStatic(OverloadedClass, "sum", 1, 2, (short) 3) == 6
+        construct(OverloadedClass, 1, 2).constructor == "int...2"
+    }
+
+    def "Should prefer fixed arity constructors to variable arity ones"() {
+        expect:
+        construct(OverloadedClass, "flirp").constructor == "String"
+        construct(OverloadedClass, 10).constructor == "Object"
+    }
+
+    def "Should fail ambiguous calls"() {
+        setup:
+        def object = construct(OverloadedClass)
+
+        when:
+        callMethod(object, "ambiguous", [null] as Object[])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message.startsWith("Ambiguous call to ambiguous")
+    }
+
+    def "Should allocate objects without running constructors"() {
+        when:
+        def object = Caller.allocate(ThrowingClass)
+
+        then:
+        object instanceof ThrowingClass
+        object.string == null
+        object.number == 0
+    }
+
+    def "Should fail allocating abstract classes and interfaces"() {
+        when:
+        Caller.allocate(type)
+
+        then:
+        thrown InstantiationException
+
+        where:
+        type << [AbstractList, Runnable, int[], int]
+    }
+
+    def "Should call methods of prepared classes"() {
+        setup:
+        Caller.prepare(OverloadedClass)
+        def object = construct(OverloadedClass, "flirp")
+
+        expect:
+        object.constructor == "String"
+        callMethod(object, "describe", 10L) == "long"
+        callStatic(OverloadedClass, "sum", 1, 2) == 3
+    }
 }
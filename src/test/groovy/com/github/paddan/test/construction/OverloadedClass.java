@@ -0,0 +1,102 @@
+//MIT License
+//
+//    Copyright (c) 2016 TestUtilities by Patrik Lindefors
+//
+//    Permission is hereby granted, free of charge, to any person obtaining a copy
+//    of this software and associated documentation files (the "Software"), to deal
+//    in the Software without restriction, including without limitation the rights
+//    to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+//    copies of the Software, and to permit persons to whom the Software is
+//    furnished to do so, subject to the following conditions:
+//
+//    The above copyright notice and this permission notice shall be included in all
+//    copies or substantial portions of the Software.
+//
+//    THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//    IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//    FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//    AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//    LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//    OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+//    SOFTWARE.
+
+
+package com.github.paddan.test.construction;
+
+@SuppressWarnings("unused")
+public final class OverloadedClass {
+
+    private final String constructor;
+
+    private OverloadedClass() {
+        this.constructor = "none";
+    }
+
+    private OverloadedClass(Object value) {
+        this.constructor = "Object";
+    }
+
+    private OverloadedClass(String value) {
+        this.constructor = "String";
+    }
+
+    private OverloadedClass(int... values) {
+        this.constructor = "int..." + values.length;
+    }
+
+    private String describe(Object value) {
+        return "Object";
+    }
+
+    private String describe(CharSequence value) {
+        return "CharSequence";
+    }
+
+    private String describe(String value) {
+        return "String";
+    }
+
+    private String describe(int value) {
+        return "int";
+    }
+
+    private String describe(long value) {
+        return "long";
+    }
+
+    private String widen(long value) {
+        return "long " + value;
+    }
+
+    private String widen(double value) {
+        return "double " + value;
+    }
+
+    private String ambiguous(Integer value) {
+        return "Integer";
+    }
+
+    private String ambiguous(String value) {
+        return "String";
+    }
+
+    private static String format(String format, Object... args) {
+        return "Object... " + args.length;
+    }
+
+    private static String format(String format, String... args) {
+        return "String... " + args.length;
+    }
+
+    private static int sum(int... values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    public String getConstructor() {
+        return constructor;
+    }
+}
@@ -48,6 +48,11 @@ public final class PrivateClass {
         return retVal;
     }
 
+    @SuppressWarnings("unused")
+    private static String join(String first, String second, String third, String fourth) {
+        return first + second + third + fourth;
+    }
+
     @SuppressWarnings("unused")
     private String returnStringFromPrivate() {
         return "hej";
@@ -0,0 +1,207 @@
+package com.github.paddan.test.generation
+
+import com.github.paddan.test.access.Accessor
+import com.github.paddan.test.construction.Caller
+import com.github.paddan.test.injection.Injector
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import javax.tools.DiagnosticCollector
+import javax.tools.JavaFileObject
+import javax.tools.ToolProvider
+import java.lang.reflect.InvocationTargetException
+import java.nio.file.Files
+import java.nio.file.Path
+
+class GenerateAccessProcessorTest extends Specification {
+    static final TARGET = '''
+        package demo;
+
+        class Base {
+            String label(String value) {
+                return "String";
+            }
+        }
+
+        public class Target extends Base {
+            String name = "name";
+            protected int count = 1;
+            static String shared;
+            private String secret = "secret";
+
+            public Target() {
+            }
+
+            Target(String name, int count) {
+                this.name = name;
+                this.count = count;
+            }
+
+            Target(Object origin) {
+                this.name = "Object";
+            }
+
+            Target(String name) {
+                this.name = "String";
+            }
+
+            String greet(String who) {
+                return "Hello " + who + "!";
+            }
+
+            int add(int first, int second) {
+                return first + second;
+            }
+
+            static String twice(String value) {
+                return value + value;
+            }
+
+            void fail() throws Exception {
+                throw new Exception("Failed!");
+            }
+
+            String describe(Object value) {
+                return "Object";
+            }
+
+            String describe(String value) {
+                return "String";
+            }
+
+            String label(Object value) {
+                return "Object";
+            }
+        }
+        '''
+
+    static final TEST = '''
+        package demo;
+
+        import com.github.paddan.test.generation.GenerateAccess;
+
+        @GenerateAccess(Target.class)
+        class TargetTest {
+        }
+        '''
+
+    @Shared
+    @TempDir
+    Path output
+
+    @Shared
+    Class<?> target
+
+    def setupSpec() {
+        def sources = output.resolve("src/demo")
+        Files.createDirectories(sources)
+        Files.writeString(sources.resolve("Target.java"), TARGET.stripIndent())
+        Files.writeString(sources.resolve("TargetTest.java"), TEST.stripIndent())
+        def classes = Files.createDirectories(output.resolve("classes"))
+
+        def compiler = ToolProvider.systemJavaCompiler
+        def diagnostics = new DiagnosticCollector<JavaFileObject>()
+        def fileManager = compiler.getStandardFileManager(diagnostics, null, null)
+        def units = fileManager.getJavaFileObjects(sources.resolve("Target.java"), sources.resolve("TargetTest.java"))
+        def task = compiler.getTask(null, fileManager, diagnostics,
+                ["-classpath", System.getProperty("java.class.path"), "-d", classes.toString()], null, units)
+        task.processors = [new GenerateAccessProcessor()]
+        assert task.call(), diagnostics.diagnostics.toString()
+        fileManager.close()
+
+        def loader = new URLClassLoader([classes.toUri().toURL()] as URL[], GenerateAccessProcessorTest.classLoader)
+        target = loader.loadClass("demo.Target")
+    }
+
+    def "Should generate and register an access for the target"() {
+        when:
+        def access = GeneratedAccessors.of(target)
+
+        then:
+        access.class.name == "demo.Target_GeneratedAccess"
+        access.targetClass == target
+    }
+
+    def "Should not find an access for classes without one"() {
+        expect:
+        GeneratedAccessors.of(String) == null
+    }
+
+    def "Should read and write fields through the generated access"() {
+        setup:
+        def instance = target.getConstructor().newInstance()
+
+        when:
+        Injector.inject("Hello!", instance, "name")
+        Injector.inject(10, instance, "count")
+
+        then:
+        Accessor.get("name", instance) == "Hello!"
+        Accessor.get("count", instance) == 10
+        GeneratedAccessors.of(target).get(instance, "count") == 10
+    }
+
+    def "Should fall back to reflection for private fields"() {
+        setup:
+        def instance = target.getConstructor().newInstance()
+
+        when:
+        Injector.inject("Hello!", instance, "secret")
+
+        then:
+        GeneratedAccessors.of(target).get(instance, "secret") == GeneratedAccess.UNHANDLED
+        Accessor.get("secret", instance) == "Hello!"
+    }
+
+    def "Should inject into static fields through the generated access"() {
+        when:
+        Injector.inject("Hello!", target, "shared")
+
+        then:
+        GeneratedAccessors.of(target).get(null, "shared") == "Hello!"
+    }
+
+    def "Should call methods and constructors through the generated access"() {
+        when:
+        def instance = Caller.construct(target, "Bob", 5)
+
+        then:
+        Accessor.get("count", instance) == 5
+        Caller.callMethod(instance, "greet", "Bob") == "Hello Bob!"
+        Caller.callMethod(instance, "add", 1, 2) == 3
+        Caller.callStatic(target, "twice", "Hi") == "HiHi"
+    }
+
+    def "Should fall back to reflection for arguments the generated access doesn't take"() {
+        setup:
+        def instance = target.getConstructor().newInstance()
+
+        expect:
+        GeneratedAccessors.of(target).invoke(instance, "toString", [] as Object[]) == GeneratedAccess.UNHANDLED
+        Caller.callMethod(instance, "toString").startsWith("demo.Target@")
+    }
+
+    def "Should leave overloads that take as many parameters to reflection"() {
+        setup:
+        def access = GeneratedAccessors.of(target)
+        def instance = target.getConstructor().newInstance()
+
+        expect:
+        access.invoke(instance, "describe", ["x"] as Object[]) == GeneratedAccess.UNHANDLED
+        access.invoke(instance, "label", ["x"] as Object[]) == GeneratedAccess.UNHANDLED
+        access.construct(["x"] as Object[]) == GeneratedAccess.UNHANDLED
+        Caller.callMethod(instance, "describe", "x") == "String"
+        Caller.callMethod(instance, "label", "x") == "String"
+        Accessor.get("name", Caller.construct(target, "x")) == "String"
+    }
+
+    def "Should wrap exceptions thrown by generated calls"() {
+        when:
+        Caller.callMethod(target.getConstructor().newInstance(), "fail")
+
+        then:
+        def e = thrown(InvocationTargetException)
+        e.cause.message == "Failed!"
+    }
+}
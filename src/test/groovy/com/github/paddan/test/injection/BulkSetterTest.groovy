@@ -0,0 +1,75 @@
+package com.github.paddan.test.injection
+
+import com.github.paddan.test.injection.test_classes.ClassToInject
+import com.github.paddan.test.injection.test_classes.InjectTarget
+import spock.lang.Specification
+
+class BulkSetterTest extends Specification {
+    def "Should set fields across the class hierarchy in one go"() {
+        setup:
+        def fields = [InjectTarget.getDeclaredField("namedField"), InjectTarget.getDeclaredField("intField"),
+                      InjectTarget.superclass.getDeclaredField("superNamedField")]
+        def named = new ClassToInject()
+        def superNamed = new ClassToInject()
+        def target = new InjectTarget()
+
+        when:
+        def setter = BulkSetter.of(InjectTarget, fields)
+        setter.apply(target, [named, 42, superNamed] as Object[])
+
+        then:
+        setter.generatedFields() == 3
+        target.namedField.is(named)
+        target.intField == 42
+        target.superNamedField.is(superNamed)
+    }
+
+    def "Should set final fields through field handles"() {
+        setup:
+        def fields = [InjectTarget.getDeclaredField("finalField"), InjectTarget.getDeclaredField("privateField")]
+        def target = new InjectTarget()
+
+        when:
+        def setter = BulkSetter.of(InjectTarget, fields)
+        setter.apply(target, ["final", "private"] as Object[])
+
+        then:
+        setter.generatedFields() == 1
+        target.privateField == "private"
+    }
+
+    def "Should reuse the setter for the same fields"() {
+        setup:
+        def fields = [InjectTarget.getDeclaredField("namedField")]
+
+        expect:
+        BulkSetter.of(InjectTarget, fields).is(BulkSetter.of(InjectTarget, new ArrayList<>(fields)))
+    }
+
+    def "Should only accept values that fit the field as they are"() {
+        setup:
+        def intField = InjectTarget.getDeclaredField("intField")
+        def namedField = InjectTarget.getDeclaredField("namedField")
+
+        expect:
+        BulkSetter.accepts(intField, 1)
+        !BulkSetter.accepts(intField, 1L)
+        !BulkSetter.accepts(intField, null)
+        BulkSetter.accepts(namedField, null)
+        BulkSetter.accepts(namedField, new ClassToInject())
+        !BulkSetter.accepts(namedField, "string")
+        BulkSetter.accepts(InjectTarget.getDeclaredField("staticField"), "string")
+    }
+
+    def "Should fall back to one field at a time when a value needs converting"() {
+        setup:
+        def target = new InjectTarget()
+
+        when:
+        Injector.injectAll([intField: (short) 3, privateField: "bulk"], target)
+
+        then:
+        target.intField == 3
+        target.privateField == "bulk"
+    }
+}
@@ -1,14 +1,30 @@
 package com.github.paddan.test.injection
 
+import com.github.paddan.test.access.Accessor
+import com.github.paddan.test.access.PathTarget
 import com.github.paddan.test.annotations.MyFirstAnnotation
+import com.github.paddan.test.annotations.MySecondAnnotation
 import com.github.paddan.test.injection.test_classes.ClassToInject
 import com.github.paddan.test.injection.test_classes.InjectTarget
+import com.github.paddan.test.injection.test_classes.StaticTarget
+import com.github.paddan.test.utils.FieldHandle
+import com.github.paddan.test.utils.HidingTarget
 import org.mockito.InjectMocks
 import org.mockito.Mockito
+import spock.lang.Requires
 import spock.lang.Specification
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
 import static com.github.paddan.test.injection.Injector.autoInject
+import static com.github.paddan.test.injection.Injector.autoInjectLazy
+import static com.github.paddan.test.injection.Injector.autoInjectParallel
 import static com.github.paddan.test.injection.Injector.inject
+import static com.github.paddan.test.injection.Injector.injectAll
+import static com.github.paddan.test.injection.Injector.injectAllAnnotated
+import static com.github.paddan.test.injection.Injector.injectInt
 
 class InjectorTest extends Specification {
     InjectTarget target
@@ -97,6 +113,59 @@ class InjectorTest extends Specification {
         target.intField == 10
     }
 
+    def "Should inject an int into the field named intField without boxing"() {
+        when:
+        injectInt(10, target, "intField")
+
+        then:
+        target.intField == 10
+    }
+
+    def "Should not inject an int into a field of another type"() {
+        when:
+        injectInt(10, target, "privateField")
+
+        then:
+        thrown IllegalArgumentException
+    }
+
+    def "Should inject several named fields at once"() {
+        when:
+        injectAll([namedField: classToInject, privateField: "Hello!", intField: 10], target)
+
+        then:
+        target.namedField == classToInject
+        target.privateField == "Hello!"
+        target.intField == 10
+    }
+
+    def "Should inject several annotated fields at once"() {
+        when:
+        injectAllAnnotated([(MyFirstAnnotation): classToInject, (MySecondAnnotation): classToInject], target)
+
+        then:
+        target.annotatedField == classToInject
+        target.superAnnotatedField == classToInject
+    }
+
+    def "Should not inject any field when one of them is missing"() {
+        when:
+        injectAll([namedField: classToInject, "invalid name": "Hello!"], target)
+
+        then:
+        thrown IllegalArgumentException
+        !target.namedField
+    }
+
+    def "Should restore injected fields when one of them can't be injected"() {
+        when:
+        injectAll([namedField: classToInject, intField: null], target)
+
+        then:
+        thrown IllegalArgumentException
+        !target.namedField
+    }
+
     def "Should mock all fields with mockito"() {
         when:
         def mocks = autoInject(Mockito.&mock, target)
@@ -123,6 +192,86 @@ class InjectorTest extends Specification {
         target.superNamedField == mocks."superNamedField"
     }
 
+    def "Should mock all fields in parallel with mockito"() {
+        when:
+        def mocks = autoInjectParallel(Mockito.&mock, target)
+
+        then:
+        mocks.size() == 5
+        target.superSuperDummy == mocks."superSuperDummy"
+        target.namedField == mocks."namedField"
+        target.superAnnotatedField == mocks."superAnnotatedField"
+        target.annotatedField == mocks."annotatedField"
+        target.superNamedField == mocks."superNamedField"
+    }
+
+    def "Should mock all fields in parallel on a bounded executor"() {
+        setup:
+        def executor = Executors.newFixedThreadPool(2)
+
+        when:
+        def mocks = autoInjectParallel(Mockito.&mock, target, executor)
+
+        then:
+        mocks.size() == 5
+        target.namedField == mocks."namedField"
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "Should inject lazy proxies into interface fields"() {
+        setup:
+        def created = []
+
+        when:
+        def mocks = autoInjectLazy({ created << it; Mockito.mock(it) }, target)
+
+        then:
+        mocks.size() == 5
+        target.namedField != null
+        created.every { !ClassToInject.isAssignableFrom(it) }
+    }
+
+    def "Should create the real mock when the lazy mock is read from the map"() {
+        when:
+        def mocks = autoInjectLazy(Mockito.&mock, target)
+        def namedField = mocks."namedField"
+
+        then:
+        Mockito.mockingDetails(namedField).isMock()
+        !Mockito.mockingDetails(target.namedField).isMock()
+        target.namedField.hashCode() == namedField.hashCode()
+    }
+
+    def "Should call a failing mock function only once for a lazy mock"() {
+        setup:
+        def calls = 0
+
+        when:
+        def mocks = autoInjectLazy({
+            calls++
+            if (ClassToInject.isAssignableFrom(it)) {
+                throw new IllegalArgumentException("Can't mock " + it)
+            }
+            Mockito.mock(it)
+        }, target)
+        target.namedField.toString()
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.cause instanceof IllegalArgumentException
+
+        when:
+        def callsAfterFailure = calls
+        target.namedField.hashCode()
+
+        then:
+        thrown IllegalStateException
+        calls == callsAfterFailure
+        mocks."namedField" == null
+    }
+
     def "Should inject null into static field"() {
         when:
         inject(null, InjectTarget, "staticField")
@@ -222,4 +371,269 @@ class InjectorTest extends Specification {
         then:
         thrown IllegalArgumentException
     }
+
+    def "Should inject into the most derived of two fields with the same name unless qualified"() {
+        setup:
+        def target = new HidingTarget()
+
+        when:
+        inject("Hello!", target, "id")
+        inject("Hi!", target, "HiddenFieldBase.id")
+
+        then:
+        Accessor.get("id").from(target) == "Hello!"
+        Accessor.get("HiddenFieldBase.id").from(target) == "Hi!"
+    }
+
+    def "Should inject into the last field of a path"() {
+        setup:
+        def target = new PathTarget()
+
+        when:
+        inject("Hello!").into(target).atPath("inner.privateField")
+
+        then:
+        Accessor.path("inner.privateField").from(target) == "Hello!"
+    }
+
+    def "Should inject into the last field of a path starting with a static field"() {
+        when:
+        inject("Hello!").into(PathTarget).atPath("instance.any")
+
+        then:
+        Accessor.path("instance.any").from(PathTarget) == "Hello!"
+    }
+
+    def "Should throw exception when a field of a path is missing"() {
+        when:
+        inject("Hello!").into(new PathTarget()).atPath("inner.missing")
+
+        then:
+        thrown IllegalArgumentException
+    }
+
+    def "Should restore static fields from a snapshot"() {
+        setup:
+        def snapshot = Injector.snapshotStatics(InjectTarget)
+        def original = InjectTarget.staticField
+
+        when:
+        inject("Changed!", InjectTarget, "staticField")
+
+        then:
+        snapshot.changed()*.name == ["staticField"]
+
+        when:
+        snapshot.restore()
+
+        then:
+        InjectTarget.staticField.is(original)
+        snapshot.changed().isEmpty()
+    }
+
+    def "Should leave static final fields out of a snapshot"() {
+        expect:
+        Injector.snapshotStatics(StaticTarget).size() == 2
+    }
+
+    def "Should restore injected fields in reverse order when the scope is closed"() {
+        setup:
+        def original = target.privateField
+        def originalStatic = InjectTarget.staticField
+        def scope = Injector.scope()
+
+        when:
+        inject("First!", target, "privateField")
+        inject("Second!", target, "privateField")
+        injectInt(42, target, "intField")
+        inject("Static!", InjectTarget, "staticField")
+        injectAll([namedField: classToInject], target)
+
+        then:
+        scope.size() == 5
+        target.privateField == "Second!"
+
+        when:
+        scope.close()
+
+        then:
+        target.privateField.is(original)
+        target.intField == 0
+        InjectTarget.staticField.is(originalStatic)
+        !target.namedField
+    }
+
+    def "Should restore mocks injected in a scope"() {
+        when:
+        Injector.scope().withCloseable {
+            autoInject({ Mockito.mock(it) }, target)
+            assert target.annotatedField
+        }
+
+        then:
+        !target.annotatedField
+        !target.namedField
+    }
+
+    def "Should only restore the fields injected in a nested scope when it's closed"() {
+        setup:
+        def outer = Injector.scope()
+
+        when:
+        inject("Outer!", target, "privateField")
+        Injector.scope().withCloseable {
+            inject("Inner!", target, "privateField")
+        }
+
+        then:
+        target.privateField == "Outer!"
+
+        when:
+        outer.close()
+
+        then:
+        target.privateField == "This is private!"
+    }
+
+    def "Should not record injections when no scope is open"() {
+        setup:
+        def scope = Injector.scope()
+        scope.close()
+
+        when:
+        inject("Hello!", target, "privateField")
+
+        then:
+        scope.size() == 0
+        target.privateField == "Hello!"
+    }
+
+    def "Should make an exclusive scope wait for another exclusive scope on the same class"() {
+        setup:
+        def injected = new CountDownLatch(1)
+        def first = Injector.exclusiveScope(StaticTarget)
+        injectInt(1, StaticTarget, "counter")
+        def second = Thread.start {
+            Injector.exclusiveScope().withCloseable {
+                injectInt(2, StaticTarget, "counter")
+                injected.countDown()
+            }
+        }
+
+        when:
+        def injectedWhileLocked = injected.await(100, TimeUnit.MILLISECONDS)
+        first.close()
+        second.join()
+
+        then:
+        !injectedWhileLocked
+        injected.count == 0
+        Accessor.path("counter").from(StaticTarget) == 0
+    }
+
+    def "Should not inject into static fields a shared scope reads"() {
+        setup:
+        def scope = Injector.sharedScope(StaticTarget)
+
+        when:
+        injectInt(1, StaticTarget, "counter")
+
+        then:
+        thrown IllegalStateException
+
+        cleanup:
+        scope.close()
+    }
+
+    @Requires({ InjectorTest.haveSeparateStripes() })
+    def "Should fail instead of deadlocking on an undeclared class another scope holds"() {
+        setup:
+        def (low, high) = StaticLocks.stripe(StaticTarget) < StaticLocks.stripe(InjectTarget)
+                ? [StaticTarget, InjectTarget] : [InjectTarget, StaticTarget]
+        def locked = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def other = Thread.start {
+            Injector.exclusiveScope(low).withCloseable {
+                locked.countDown()
+                release.await()
+            }
+        }
+        locked.await()
+        def scope = Injector.exclusiveScope(high)
+
+        when:
+        if (low == StaticTarget) {
+            injectInt(1, StaticTarget, "counter")
+        } else {
+            inject("Hello!", InjectTarget, "staticField")
+        }
+
+        then:
+        thrown IllegalStateException
+
+        cleanup:
+        scope.close()
+        release.countDown()
+        other.join()
+    }
+
+    @Requires({ InjectorTest.haveSeparateStripes() })
+    def "Should fail instead of deadlocking when nested scopes lock in opposite order"() {
+        setup:
+        def opened = new CountDownLatch(2)
+        def failures = Collections.synchronizedList([])
+        def nest = { outer, inner ->
+            Thread.start {
+                Injector.exclusiveScope(outer).withCloseable {
+                    opened.countDown()
+                    opened.await(5, TimeUnit.SECONDS)
+                    try {
+                        Injector.exclusiveScope(inner).close()
+                    } catch (IllegalStateException e) {
+                        failures << e
+                    }
+                }
+            }
+        }
+
+        when:
+        def first = nest(StaticTarget, InjectTarget)
+        def second = nest(InjectTarget, StaticTarget)
+        first.join(5000)
+        second.join(5000)
+
+        then:
+        !first.alive
+        !second.alive
+        !failures.isEmpty()
+    }
+
+    def "Should release the locks of a scope that couldn't restore every field"() {
+        setup:
+        def scope = Injector.exclusiveScope(StaticTarget)
+        injectInt(1, StaticTarget, "counter")
+        scope.record(FieldHandle.of(InjectTarget.getDeclaredField("intField")), null, 0)
+
+        when:
+        scope.close()
+
+        then:
+        thrown IllegalStateException
+        Accessor.path("counter").from(StaticTarget) == 0
+
+        when:
+        def other = Thread.start { Injector.exclusiveScope(StaticTarget).close() }
+        other.join(1000)
+
+        then:
+        !other.alive
+    }
+
+    static boolean haveSeparateStripes() {
+        def stripes = []
+        for (def type = InjectTarget; type != Object; type = type.superclass) {
+            stripes << StaticLocks.stripe(type)
+        }
+        !stripes.contains(StaticLocks.stripe(StaticTarget))
+    }
 }
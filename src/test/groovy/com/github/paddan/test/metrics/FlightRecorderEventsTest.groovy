@@ -0,0 +1,94 @@
+package com.github.paddan.test.metrics
+
+import com.github.paddan.test.access.Accessor
+import com.github.paddan.test.construction.Caller
+import com.github.paddan.test.injection.Injector
+import com.github.paddan.test.injection.test_classes.InjectTarget
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordedEvent
+import jdk.jfr.consumer.RecordingFile
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class FlightRecorderEventsTest extends Specification {
+    static final EVENTS = ["Lookup", "Injection", "Invocation", "MockCreation"].collect { "com.github.paddan.test.$it" as String }
+
+    def "Should record lookup, injection and invocation events"() {
+        setup:
+        def target = new InjectTarget()
+
+        when:
+        def events = record {
+            Accessor.get("privateField", target)
+            Injector.inject("Hello!", target, "privateField")
+            Caller.callMethod(target, "toString")
+        }
+
+        then:
+        def lookup = events.find { it.eventType.name == "com.github.paddan.test.Lookup" && it.getString("member") == "privateField" }
+        lookup.getClass("targetClass").name == InjectTarget.name
+        lookup.getBoolean("found")
+        events.any { it.eventType.name == "com.github.paddan.test.Injection" && it.getString("member") == "privateField" }
+        events.any { it.eventType.name == "com.github.paddan.test.Invocation" && it.getString("member") == "toString" }
+    }
+
+    def "Should record failed lookups"() {
+        when:
+        def events = record {
+            try {
+                Accessor.get("noSuchField", new InjectTarget())
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        then:
+        events.any { it.eventType.name == "com.github.paddan.test.Lookup" && !it.getBoolean("found") }
+    }
+
+    def "Should record mock creation"() {
+        when:
+        def events = record {
+            Injector.autoInject({ type -> null }, new InjectTarget())
+        }
+
+        then:
+        events.any { it.eventType.name == "com.github.paddan.test.MockCreation" && !it.getBoolean("deferred") }
+    }
+
+    def "Should record nothing unless enabled"() {
+        when:
+        def events = record(false) {
+            Accessor.get("privateField", new InjectTarget())
+        }
+
+        then:
+        events.every { !EVENTS.contains(it.eventType.name) }
+    }
+
+    def "Should not allocate events unless enabled"() {
+        expect:
+        LookupEvent.start(Operation.FIELD).is(LookupEvent.start(Operation.FIELD))
+        InvocationEvent.start().is(InvocationEvent.start())
+        InjectionEvent.start().is(InjectionEvent.start())
+        MockCreationEvent.start().is(MockCreationEvent.start())
+    }
+
+    private static List<RecordedEvent> record(boolean enabled = true, Closure calls) {
+        def file = Files.createTempFile("events", ".jfr")
+        def recording = new Recording()
+        try {
+            if (enabled) {
+                EVENTS.each { recording.enable(it) }
+            }
+            recording.start()
+            calls()
+            recording.stop()
+            recording.dump(file)
+            return RecordingFile.readAllEvents(file)
+        } finally {
+            recording.close()
+            Files.deleteIfExists(file)
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.paddan.test.metrics
+
+import com.github.paddan.test.access.Accessor
+import com.github.paddan.test.annotations.MyFirstAnnotation
+import com.github.paddan.test.construction.Caller
+import com.github.paddan.test.injection.Injector
+import com.github.paddan.test.injection.test_classes.InjectTarget
+import com.github.paddan.test.injection.test_classes.StaticTarget
+import spock.lang.Specification
+
+class InMemoryMetricsRecorderTest extends Specification {
+    def recorder = new InMemoryMetricsRecorder()
+
+    def setup() {
+        Metrics.install(recorder)
+    }
+
+    def cleanup() {
+        Metrics.uninstall()
+    }
+
+    def "Should count field lookups and cache hits"() {
+        setup:
+        def target = new InjectTarget()
+
+        when:
+        Accessor.get("privateField", target)
+        Accessor.get("privateField", target)
+
+        then:
+        recorder.getLookups(Operation.FIELD) == 2
+        recorder.getCacheHits(Operation.FIELD) >= 1
+        recorder.getCacheHitRatio(Operation.FIELD) >= 0.5d
+    }
+
+    def "Should count the lookup that indexes the field names as a miss"() {
+        setup:
+        def target = new LookupTarget()
+
+        when:
+        Accessor.get("named", target)
+        Accessor.get("named", target)
+
+        then:
+        recorder.getLookups(Operation.FIELD) == 2
+        recorder.getCacheHits(Operation.FIELD) == 1
+    }
+
+    def "Should count the lookup that builds the annotation index as a miss"() {
+        setup:
+        def target = new LookupTarget()
+
+        when:
+        Accessor.get(MyFirstAnnotation, String, target)
+        Accessor.get(MyFirstAnnotation, String, target)
+
+        then:
+        recorder.getLookups(Operation.ANNOTATED_FIELD) == 2
+        recorder.getCacheHits(Operation.ANNOTATED_FIELD) == 1
+    }
+
+    def "Should count failed lookups"() {
+        when:
+        Injector.inject("Hello!", new InjectTarget(), "noSuchField")
+
+        then:
+        thrown IllegalArgumentException
+        recorder.getFailedLookups(Operation.FIELD) == 1
+    }
+
+    def "Should count method resolutions"() {
+        when:
+        Caller.callMethod(new InjectTarget(), "toString")
+
+        then:
+        recorder.getLookups(Operation.METHOD) == 1
+        recorder.getLatencyPercentile(Operation.METHOD, 0.5d) > 0
+    }
+
+    def "Should record mock creation time per target class"() {
+        when:
+        Injector.autoInject({ type -> null }, new InjectTarget())
+
+        then:
+        recorder.getMockCreationNanos(InjectTarget) > 0
+    }
+
+    def "Should record lock wait time per class"() {
+        setup:
+        def scope = Injector.exclusiveScope(StaticTarget)
+        def waiting = Thread.start {
+            Injector.exclusiveScope(StaticTarget).close()
+        }
+
+        when:
+        Thread.sleep(50)
+        scope.close()
+        waiting.join()
+
+        then:
+        recorder.getLockWaitNanos(StaticTarget) > 0
+    }
+
+    def "Should report nothing once uninstalled"() {
+        setup:
+        Metrics.uninstall()
+
+        when:
+        Accessor.get("privateField", new InjectTarget())
+
+        then:
+        !Metrics.isEnabled()
+        recorder.getLookups(Operation.FIELD) == 0
+    }
+
+    def "Should include hotspots in the report"() {
+        when:
+        Accessor.get("privateField", new InjectTarget())
+
+        then:
+        recorder.report().contains(InjectTarget.name)
+    }
+}
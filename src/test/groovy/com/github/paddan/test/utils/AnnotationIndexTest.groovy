@@ -0,0 +1,54 @@
+package com.github.paddan.test.utils
+
+import com.github.paddan.test.annotations.MyFirstAnnotation
+import com.github.paddan.test.annotations.MySecondAnnotation
+import com.github.paddan.test.injection.test_classes.ClassToInject
+import com.github.paddan.test.injection.test_classes.InjectTarget
+import spock.lang.Specification
+
+class AnnotationIndexTest extends Specification {
+    def "Should index annotated fields in field table order"() {
+        when:
+        def fields = AnnotationIndex.of(InjectTarget).getFields(MyFirstAnnotation)
+
+        then:
+        fields*.name == ["annotatedField", "privateField"]
+    }
+
+    def "Should index annotated fields of superclasses"() {
+        expect:
+        AnnotationIndex.of(InjectTarget).getFields(MySecondAnnotation)*.name == ["superAnnotatedField"]
+    }
+
+    def "Should index annotated fields by type"() {
+        setup:
+        def index = AnnotationIndex.of(InjectTarget)
+
+        expect:
+        index.getFields(MyFirstAnnotation, String)*.name == ["privateField"]
+        index.findByType(MyFirstAnnotation, ClassToInject).name == "annotatedField"
+        index.findByType(MyFirstAnnotation, Integer) == null
+    }
+
+    def "Should find the first field a value can be assigned to"() {
+        setup:
+        def index = AnnotationIndex.of(InjectTarget)
+
+        expect:
+        index.findAssignable(MyFirstAnnotation, String).name == "privateField"
+        index.findAssignable(MyFirstAnnotation, null).name == "annotatedField"
+        index.findAssignable(MyFirstAnnotation, Integer) == null
+        index.findAssignable(MyFirstAnnotation, Integer) == null
+    }
+
+    def "Should return nothing for annotations that aren't used"() {
+        expect:
+        AnnotationIndex.of(ClassToInject).getFields(MyFirstAnnotation).isEmpty()
+        AnnotationIndex.of(ClassToInject).findAssignable(MyFirstAnnotation, null) == null
+    }
+
+    def "Should reuse the cached index"() {
+        expect:
+        AnnotationIndex.of(InjectTarget).is(AnnotationIndex.of(InjectTarget))
+    }
+}
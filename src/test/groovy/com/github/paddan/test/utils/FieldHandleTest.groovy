@@ -0,0 +1,107 @@
+package com.github.paddan.test.utils
+
+import com.github.paddan.test.construction.Caller
+import com.github.paddan.test.construction.PrivateClass
+import com.github.paddan.test.injection.test_classes.InjectTarget
+import spock.lang.Specification
+
+class FieldHandleTest extends Specification {
+    def "Should read and write a private field"() {
+        setup:
+        def target = new InjectTarget()
+        def handle = FieldHandle.of(InjectTarget.getDeclaredField("privateField"))
+
+        when:
+        handle.set(target, "Hello!")
+
+        then:
+        handle.get(target) == "Hello!"
+        target.privateField == "Hello!"
+    }
+
+    def "Should write a final field"() {
+        setup:
+        def target = new InjectTarget()
+
+        when:
+        FieldHandle.of(InjectTarget.getDeclaredField("finalField")).set(target, "Hello!")
+
+        then:
+        target.finalField == "Hello!"
+    }
+
+    def "Should unbox values written into primitive fields"() {
+        setup:
+        def target = new InjectTarget()
+
+        when:
+        FieldHandle.of(InjectTarget.getDeclaredField("intField")).set(target, 10)
+
+        then:
+        target.intField == 10
+    }
+
+    def "Should not write a value of the wrong type"() {
+        when:
+        FieldHandle.of(InjectTarget.getDeclaredField("intField")).set(new InjectTarget(), "Hello!")
+
+        then:
+        thrown IllegalArgumentException
+    }
+
+    def "Should reuse the cached handle"() {
+        expect:
+        FieldHandle.of(InjectTarget.getDeclaredField("privateField")).is(
+                FieldHandle.of(InjectTarget.getDeclaredField("privateField")))
+    }
+
+    def "Should widen primitive reads and writes"() {
+        setup:
+        def target = new InjectTarget()
+        def handle = FieldHandle.of(InjectTarget.getDeclaredField("intField"))
+
+        when:
+        handle.setShort(target, (short) 10)
+
+        then:
+        target.intField == 10
+        handle.getLong(target) == 10L
+        handle.getDouble(target) == 10.0d
+    }
+
+    def "Should not narrow primitive reads and writes"() {
+        setup:
+        def handle = FieldHandle.of(InjectTarget.getDeclaredField("intField"))
+
+        when:
+        access(handle, new InjectTarget())
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        access << [
+                { FieldHandle handle, target -> handle.getShort(target) },
+                { FieldHandle handle, target -> handle.setLong(target, 10L) },
+                { FieldHandle handle, target -> handle.getBoolean(target) }
+        ]
+    }
+
+    def "Should not box or unbox in primitive reads and writes"() {
+        setup:
+        def target = Caller.construct(PrivateClass, "flirp", 10L)
+        def handle = FieldHandle.of(PrivateClass.getDeclaredField("number"))
+
+        when:
+        access(handle, target)
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        access << [
+                { FieldHandle handle, target -> handle.getLong(target) },
+                { FieldHandle handle, target -> handle.setLong(target, 10L) }
+        ]
+    }
+}
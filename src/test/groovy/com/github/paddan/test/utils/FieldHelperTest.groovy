@@ -11,4 +11,53 @@ class FieldHelperTest extends Specification {
         then:
         fields.size() == 9
     }
+
+    def "Should list super class fields before sub class fields"() {
+        when:
+        def fields = FieldHelper.getFieldList(InjectTarget)
+
+        then:
+        fields.first().name == "superSuperDummy"
+        fields.last().name == "intField"
+    }
+
+    def "Should reuse the cached field list"() {
+        expect:
+        FieldHelper.getFieldList(InjectTarget).is(FieldHelper.getFieldList(InjectTarget))
+    }
+
+    def "Should not allow the cached field list to be modified"() {
+        when:
+        FieldHelper.getFieldList(InjectTarget).clear()
+
+        then:
+        thrown UnsupportedOperationException
+    }
+
+    def "Should return a copy of the cached fields"() {
+        when:
+        FieldHelper.getFields(InjectTarget)[0] = null
+
+        then:
+        FieldHelper.getFields(InjectTarget)[0] != null
+    }
+
+    def "Should find a field by name"() {
+        expect:
+        FieldHelper.findField(InjectTarget, "superNamedField").name == "superNamedField"
+        FieldHelper.findField(InjectTarget, "noSuchField") == null
+    }
+
+    def "Should resolve a hidden name to the most derived field"() {
+        expect:
+        FieldHelper.findField(HidingTarget, "id").declaringClass == HidingTarget
+    }
+
+    def "Should select a hidden field by qualifying it with the declaring class"() {
+        expect:
+        FieldHelper.findField(HidingTarget, name).declaringClass == HiddenFieldBase
+
+        where:
+        name << ["HiddenFieldBase.id", "com.github.paddan.test.utils.HiddenFieldBase.id"]
+    }
 }
@@ -0,0 +1,102 @@
+package com.github.paddan.test.utils
+
+import com.github.paddan.test.annotations.MyFirstAnnotation
+import com.github.paddan.test.injection.test_classes.InjectTarget
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+
+class MetadataCacheTest extends Specification {
+
+    @TempDir
+    Path directory
+
+    def cleanup() {
+        MetadataCache.disable()
+    }
+
+    def "Should read back recorded entries after flushing"() {
+        setup:
+        def file = directory.resolve("metadata.cache")
+        def fieldCount = FieldHelper.getFieldList(InjectTarget).size()
+        MetadataCache.enable(file)
+        MetadataCache.record(InjectTarget, fieldCount, [(MyFirstAnnotation.name): [0, 2] as int[]])
+
+        when:
+        MetadataCache.flush()
+        MetadataCache.enable(file)
+        def annotated = MetadataCache.annotatedFields(InjectTarget, fieldCount)
+
+        then:
+        Files.exists(file)
+        annotated.keySet() == [MyFirstAnnotation.name] as Set
+        annotated[MyFirstAnnotation.name] == [0, 2] as int[]
+    }
+
+    def "Should ignore entries recorded for a different field table"() {
+        setup:
+        def file = directory.resolve("metadata.cache")
+        def fieldCount = FieldHelper.getFieldList(InjectTarget).size()
+        MetadataCache.enable(file)
+        MetadataCache.record(InjectTarget, fieldCount + 1, [:])
+        MetadataCache.flush()
+
+        when:
+        MetadataCache.enable(file)
+
+        then:
+        MetadataCache.annotatedFields(InjectTarget, fieldCount) == null
+    }
+
+    def "Should treat a corrupt file as empty"() {
+        setup:
+        def file = directory.resolve("metadata.cache")
+        Files.write(file, "garbage".bytes)
+
+        when:
+        MetadataCache.enable(file)
+
+        then:
+        MetadataCache.isEnabled()
+        MetadataCache.annotatedFields(InjectTarget, FieldHelper.getFieldList(InjectTarget).size()) == null
+    }
+
+    def "Should treat an entry that overruns the file as missing"() {
+        setup:
+        def file = directory.resolve("metadata.cache")
+        def fieldCount = FieldHelper.getFieldList(InjectTarget).size()
+        MetadataCache.enable(file)
+        MetadataCache.record(InjectTarget, fieldCount, [(MyFirstAnnotation.name): [0, 2] as int[]])
+        MetadataCache.flush()
+        def bytes = Files.readAllBytes(file)
+        ByteBuffer.wrap(bytes).putInt(bytes.length - 12, Integer.MAX_VALUE)
+        Files.write(file, bytes)
+
+        when:
+        MetadataCache.enable(file)
+
+        then:
+        MetadataCache.isEnabled()
+        MetadataCache.annotatedFields(InjectTarget, fieldCount) == null
+    }
+
+    def "Should not return entries when disabled"() {
+        setup:
+        def file = directory.resolve("metadata.cache")
+        def fieldCount = FieldHelper.getFieldList(InjectTarget).size()
+        MetadataCache.enable(file)
+        MetadataCache.record(InjectTarget, fieldCount, [:])
+        MetadataCache.flush()
+        MetadataCache.enable(file)
+
+        when:
+        MetadataCache.disable()
+
+        then:
+        !MetadataCache.isEnabled()
+        MetadataCache.annotatedFields(InjectTarget, fieldCount) == null
+    }
+}